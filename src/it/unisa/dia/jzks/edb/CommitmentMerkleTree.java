@@ -4,7 +4,6 @@
  */
 package it.unisa.dia.jzks.edb;
 
-import it.unisa.dia.gas.jpbc.Element;
 import it.unisa.dia.gas.jpbc.Field;
 import it.unisa.dia.gas.jpbc.Pairing;
 import it.unisa.dia.gas.plaf.jpbc.pairing.CurveParams;
@@ -12,24 +11,21 @@ import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
 import it.unisa.dia.gas.plaf.jpbc.pbc.PBCPairing;
 import it.unisa.dia.gas.plaf.jpbc.pbc.jna.PBCLibraryProvider;
 import it.unisa.dia.jzks.merkleTree.ExternalMerkleNode;
-import it.unisa.dia.jzks.merkleTree.InternalMerkleNode;
 import it.unisa.dia.jzks.merkleTree.InvalidExternalMerkleNodeException;
 import it.unisa.dia.jzks.merkleTree.InvalidQParameterException;
 import it.unisa.dia.jzks.merkleTree.LinkedMerkleTree;
 import it.unisa.dia.jzks.merkleTree.MalformedTreeException;
 import it.unisa.dia.jzks.merkleTree.MerkleNode;
+import it.unisa.dia.jzks.merkleTree.MerkleTree;
 import it.unisa.dia.jzks.merkleTree.RootMerkleNode;
 import it.unisa.dia.jzks.qTMC.Commitment;
 import it.unisa.dia.jzks.qTMC.CommitmentKeys;
-import it.unisa.dia.jzks.qTMC.LibertYung_qTMC;
 import it.unisa.dia.jzks.qTMC.OutputCommit;
 import it.unisa.dia.lasd.position.Position;
-import it.unisa.dia.lasd.tree.TreePosition;
 
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Iterator;
@@ -55,7 +51,7 @@ public class CommitmentMerkleTree {
 	/**
 	 * Merkle Tree
 	 */
-	private LinkedMerkleTree tree;
+	private MerkleTree tree;
 
 	/**
 	 * Commitment information for internal nodes commitment operations
@@ -98,6 +94,11 @@ public class CommitmentMerkleTree {
 	 */
 	private SecureRandom random;
 
+	/**
+	 * Commits the tree nodes and keeps them up to date
+	 */
+	private MerkleTreeCommitter committer;
+
 	/**
 	 * Constructor
 	 * 
@@ -681,6 +682,10 @@ public class CommitmentMerkleTree {
 		random = utils.getNewRandomGenerator(Utils.PR_ALGO);
 		tree.setBaseSeed(random.generateSeed(16));
 
+		committer = new MerkleTreeCommitter(tree, commitment, commitmentKeys
+				.getPk(), commitmentLeaves, commitmentKeysLeaves.getPk(),
+				utils, random);
+
 	}
 
 	/**
@@ -702,45 +707,87 @@ public class CommitmentMerkleTree {
 			return false;
 		}
 
-		ArrayList<Element> message = new ArrayList<Element>();
-
 		while (en.hasMoreElements()) {
 			String key = en.nextElement();
-			ExternalMerkleNode node = new ExternalMerkleNode();
+			if (!insertLeaf(key, committer.commitLeaf(database.get(key))))
+				return false;
+		}
+		return true;
+	}
 
-			byte[] valueHash = utils.makeHashValue(database.get(key));
-			byte[] keyHash = utils.makeHashValue(key);
+	/**
+	 * Insert standard commitments of database's data into the leaves; the
+	 * commitments are computed on a pool of threads, then the leaves are
+	 * inserted into the tree
+	 * 
+	 * @param database
+	 *            Hashtable with the data to insert into the tree, the key is an
+	 *            hash value
+	 * @param threads
+	 *            Number of threads (> 0)
+	 * @return true if it's all right, false if some errors occurred
+	 */
+	public boolean populateTreeLeaves(Hashtable<String, Object> database,
+			int threads) {
 
-			logger.info("Inserting " + key);
+		if (database == null) {
+			logger.severe("Database is null");
+			return false;
+		}
+		if (threads <= 0) {
+			logger.severe("The number of threads must be > 0");
+			return false;
+		}
 
-			message.clear();
+		String[] keys = database.keySet().toArray(new String[0]);
+		OutputCommit[] leaves;
+		try {
+			leaves = committer.commitLeaves(keys, database, threads);
+		} catch (InterruptedException e) {
+			logger.severe("Leaf commitment interrupted");
+			logger.log(Level.INFO, "Exception caught", e);
+			Thread.currentThread().interrupt();
+			return false;
+		}
 
-			// TODO
-			message.add(commitmentLeaves.getZr().newOneElement());
-			Element m = commitmentLeaves.getZr().newElement();
-			m.set(new BigInteger(valueHash));
-			message.add(m);
+		for (int i = 0; i < keys.length; i++)
+			if (!insertLeaf(keys[i], leaves[i]))
+				return false;
+		return true;
+	}
 
-			OutputCommit outputCommit = commitmentLeaves.qHCom(
-					commitmentKeysLeaves.getPk(), message);
+	/**
+	 * Insert the leaf of a key into the tree
+	 * 
+	 * @param key
+	 *            The key
+	 * @param leafCommitment
+	 *            The standard commitment of the key value
+	 * @return true if it's all right, false if some errors occurred
+	 */
+	private boolean insertLeaf(String key, OutputCommit leafCommitment) {
+		ExternalMerkleNode node = new ExternalMerkleNode();
 
-			node.setCommitment(outputCommit);
+		byte[] keyHash = utils.makeHashValue(key);
 
-			node.setKey(key);
+		logger.info("Inserting " + key);
 
-			try {
-				tree.insert(node, keyHash, 0);
-			} catch (InvalidExternalMerkleNodeException e) {
-				logger
-						.severe("Error inserting a new leaf into the tree: the node is not a valid ExternalMerkleNode");
-				logger.log(Level.INFO, "Exception caught", e);
-				return false;
-			} catch (MalformedTreeException e) {
-				logger
-						.severe("Error inserting a new leaf into the tree: the tree is malformed");
-				logger.log(Level.INFO, "Exception caught", e);
-				return false;
-			}
+		node.setCommitment(leafCommitment);
+
+		node.setKey(key);
+
+		try {
+			tree.insert(node, keyHash, 0);
+		} catch (InvalidExternalMerkleNodeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the node is not a valid ExternalMerkleNode");
+			logger.log(Level.INFO, "Exception caught", e);
+			return false;
+		} catch (MalformedTreeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the tree is malformed");
+			logger.log(Level.INFO, "Exception caught", e);
+			return false;
 		}
 		return true;
 	}
@@ -767,23 +814,9 @@ public class CommitmentMerkleTree {
 			String key = en.nextElement();
 			ExternalMerkleNode node = new ExternalMerkleNode();
 
-			byte[] valueHash = utils.makeHashValue(database.get(key));
-			byte[] keyHash = utils.makeHashValue(key);
-
 			logger.info("Inserting " + key);
 
-			ArrayList<Element> message = new ArrayList<Element>();
-
-			// TODO
-			message.add(commitmentLeaves.getZr().newOneElement());
-			Element m = commitmentLeaves.getZr().newElement();
-			m.set(new BigInteger(valueHash));
-			message.add(m);
-
-			OutputCommit outputCommit = commitmentLeaves.qHCom(
-					commitmentKeysLeaves.getPk(), message);
-
-			node.setCommitment(outputCommit);
+			node.setCommitment(committer.commitLeaf(database.get(key)));
 
 			node.setKey(key);
 
@@ -807,12 +840,39 @@ public class CommitmentMerkleTree {
 	/**
 	 * Get the Tree
 	 * 
-	 * @return The LinkedMerkleTree
+	 * @return The MerkleTree
 	 */
-	public LinkedMerkleTree getTree() {
+	public MerkleTree getTree() {
 		return tree;
 	}
 
+	/**
+	 * Store the tree with another MerkleTree implementation (for example an
+	 * ArrayMerkleTree for large databases); it must be called before the
+	 * leaves are inserted, the new tree gets the parameters of the current
+	 * one
+	 * 
+	 * @param newTree
+	 *            An empty tree
+	 * @throws InvalidQParameterException
+	 *             The new tree does not accept the q parameter
+	 */
+	public void setTree(MerkleTree newTree) throws InvalidQParameterException {
+		if (tree.size() > 1 || newTree.size() > 1)
+			throw new IllegalStateException("The tree is not empty");
+
+		newTree.setQ(tree.getQ());
+		newTree.setBitNode(tree.getBitNode());
+		newTree.setLambda(tree.getLambda());
+		newTree.setBaseSeed(tree.getBaseSeed());
+		newTree.setLegacyKeyPaths(tree.isLegacyKeyPaths());
+		tree = newTree;
+
+		committer = new MerkleTreeCommitter(tree, commitment, commitmentKeys
+				.getPk(), commitmentLeaves, commitmentKeysLeaves.getPk(),
+				utils, random);
+	}
+
 	/**
 	 * Commit the whole tree
 	 * 
@@ -820,89 +880,144 @@ public class CommitmentMerkleTree {
 	 */
 	public CommitmentInformations commit() {
 		Iterator<Position<MerkleNode>> nodeIter = tree.postOrderInternal();
-		ArrayList<Element> message = new ArrayList<Element>();
-		while (nodeIter.hasNext()) {
-			TreePosition<MerkleNode> nodePos = (TreePosition<MerkleNode>) nodeIter
-					.next();
-			logger.info("Commit " + nodePos.element().getIndex() + " - "
-					+ nodePos.element().getPath());
-			InternalMerkleNode node = (InternalMerkleNode) nodePos.element();
-			OutputCommit outputCommit = null;
-
-			if (tree.numberOfChildren(nodePos) > 0) {
-
-				message.clear();
-
-				// TODO
-				message.add(commitment.getZr().newZeroElement());
-
-				for (int i = 1; i <= tree.getQ(); i++)
-					message.add(commitment.getZr().newZeroElement());
-
-				Iterator<Position<MerkleNode>> iterChild = nodePos
-						.getChildren().iterator();
-				ArrayList<Element> m = new ArrayList<Element>();
-				// TODO
-				m.add(commitmentLeaves.getZr().newZeroElement());
-				m.add(commitmentLeaves.getZr().newZeroElement());
-				while (iterChild.hasNext()) {
-					Position<MerkleNode> current = iterChild.next();
-
-					// Zero commitment in empty leaves
-					if (current.element() instanceof ExternalMerkleNode) {
-						ExternalMerkleNode element = (ExternalMerkleNode) current
-								.element();
-						if (element.getKey().equals(MerkleNode.EMPTY_KEY)) {
-							logger.info("Zero commitment " + element.getPath());
-
-							OutputCommit oc = commitmentLeaves.qHCom(
-									commitmentKeysLeaves.getPk(), m);
-
-							ExternalMerkleNode newElement = new ExternalMerkleNode();
-							newElement.setIndex(element.getIndex());
-							newElement.setKey(element.getKey());
-							newElement.setPath(element.getPath());
-							newElement.setCommitment(oc);
-							tree.replace(current, newElement);
-						}
-					}
-
-					byte[] valueHash = utils
-							.internalNodeHash(current.element());
-					Element em = commitment.getZr().newElement();
-					em.set(new BigInteger(valueHash));
-					message.set(current.element().getIndex(), em);
-				}
-
-				outputCommit = commitment
-						.qHCom(commitmentKeys.getPk(), message);
-				node.setFlag(LibertYung_qTMC.HARD_COMMITMENT);
-
-			} else {
-				outputCommit = commitment.qSCom(commitmentKeys.getPk());
-				node.setFlag(LibertYung_qTMC.SOFT_COMMITMENT);
-				byte[] seed = new byte[16];
-				random.nextBytes(seed);
-				node.setSeed(seed);
-			}
-
-			node.setCommitment(outputCommit);
+		while (nodeIter.hasNext())
+			committer.commitNode(nodeIter.next());
 
-			if (tree.isRoot(nodePos)) {
-				RootMerkleNode root = (RootMerkleNode) node;
-				root.setPk(commitmentKeys.getPk());
-				root.setPkLeaves(commitmentKeysLeaves.getPk());
-				root.setCommInfo(commitmentInformations);
-				root.setHashAlgo(utils.getHashAlgo());
-			}
+		setRootInformations();
+		return commitmentInformations;
+	}
 
-			tree.replace(nodePos, node);
+	/**
+	 * Commit the whole tree on a pool of threads: the nodes at the same depth
+	 * are committed concurrently, from the leaves up to the root
+	 * 
+	 * @param threads
+	 *            Number of threads (> 0)
+	 * @return All commitment informations needed by users, null if the commit
+	 *         has been interrupted or the number of threads is not valid
+	 */
+	public CommitmentInformations commit(int threads) {
+		if (threads <= 0) {
+			logger.severe("The number of threads must be > 0");
+			return null;
+		}
 
+		try {
+			committer.commitAll(threads);
+		} catch (InterruptedException e) {
+			logger.severe("Commit interrupted");
+			logger.log(Level.INFO, "Exception caught", e);
+			Thread.currentThread().interrupt();
+			return null;
 		}
 
+		setRootInformations();
 		return commitmentInformations;
 	}
 
+	/**
+	 * Store in the root the informations needed by users
+	 */
+	private void setRootInformations() {
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		root.setPk(commitmentKeys.getPk());
+		root.setPkLeaves(commitmentKeysLeaves.getPk());
+		root.setCommInfo(commitmentInformations);
+		root.setHashAlgo(utils.getHashAlgo());
+		root.setHashVersion(utils.getHashVersion());
+		tree.replace(tree.root(), root);
+	}
+
+	/**
+	 * Insert a new key into the committed tree without committing it again:
+	 * only the nodes on the key path are committed, so the new root costs
+	 * depth x q exponentiations
+	 * 
+	 * @param key
+	 *            The new key
+	 * @param value
+	 *            The value of the key
+	 * @return true if it's all right, false if some errors occurred
+	 */
+	public boolean insert(String key, Object value) {
+		try {
+			committer.insert(key, value);
+		} catch (InvalidExternalMerkleNodeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the node is not a valid ExternalMerkleNode");
+			logger.log(Level.INFO, "Exception caught", e);
+			return false;
+		} catch (MalformedTreeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the tree is malformed");
+			logger.log(Level.INFO, "Exception caught", e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Replace the value of a key: the leaf and its ancestors are updated in
+	 * place, one exponentiation per level
+	 * 
+	 * @param key
+	 *            The key to update
+	 * @param value
+	 *            The new value of the key
+	 * @return true if it's all right, false if the key is not in the tree
+	 */
+	public boolean update(String key, Object value) {
+		if (committer.update(key, value) == null) {
+			logger.warning("Key not found: " + key);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Remove a key: its leaf becomes an empty leaf and the ancestors are
+	 * updated in place, one exponentiation per level
+	 * 
+	 * @param key
+	 *            The key to remove
+	 * @return true if it's all right, false if the key is not in the tree
+	 */
+	public boolean delete(String key) {
+		if (committer.delete(key) == null) {
+			logger.warning("Key not found: " + key);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Apply many changes at once: the changed leaves are updated first,
+	 * then every node on the changed paths is recommitted exactly once, from
+	 * the deepest level up to the root
+	 * 
+	 * @param changes
+	 *            The new value of every changed key (inserted if the key is
+	 *            not in the tree, updated otherwise); a null value removes the
+	 *            key
+	 * @return true if it's all right, false if some errors occurred
+	 */
+	public boolean apply(Map<String, Object> changes) {
+		try {
+			committer.apply(changes);
+		} catch (InvalidExternalMerkleNodeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the node is not a valid ExternalMerkleNode");
+			logger.log(Level.INFO, "Exception caught", e);
+			return false;
+		} catch (MalformedTreeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the tree is malformed");
+			logger.log(Level.INFO, "Exception caught", e);
+			return false;
+		}
+		return true;
+	}
+
 	/**
 	 * Print to console the whole tree structure (Testing purpose)
 	 */
@@ -0,0 +1,790 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.edb;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.jzks.merkleTree.ExternalMerkleNode;
+import it.unisa.dia.jzks.merkleTree.InternalMerkleNode;
+import it.unisa.dia.jzks.merkleTree.InvalidExternalMerkleNodeException;
+import it.unisa.dia.jzks.merkleTree.KeyPath;
+import it.unisa.dia.jzks.merkleTree.MalformedTreeException;
+import it.unisa.dia.jzks.merkleTree.MerkleNode;
+import it.unisa.dia.jzks.merkleTree.MerkleTree;
+import it.unisa.dia.jzks.qTMC.Commitment;
+import it.unisa.dia.jzks.qTMC.LibertYung_qTMC;
+import it.unisa.dia.jzks.qTMC.OutputCommit;
+import it.unisa.dia.lasd.position.Position;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Commit the nodes of a Merkle tree and keep the commitments up to date when
+ * the tree changes: a changed node is recommitted, and its ancestors are
+ * updated homomorphically in the slot of the changed child, so a change costs
+ * one exponentiation per level
+ */
+public class MerkleTreeCommitter {
+
+	/**
+	 * Merkle Tree
+	 */
+	private MerkleTree tree;
+
+	/**
+	 * Commitment information for internal nodes commitment operations
+	 */
+	private Commitment commitment;
+
+	/**
+	 * Public key for internal nodes commitment operations
+	 */
+	private ArrayList<Element> pk;
+
+	/**
+	 * Commitment information for leaf nodes commitment operations
+	 */
+	private Commitment commitmentLeaves;
+
+	/**
+	 * Public key for leaf nodes commitment operations
+	 */
+	private ArrayList<Element> pkLeaves;
+
+	/**
+	 * Object needed to perform some operations
+	 */
+	private Utils utils;
+
+	/**
+	 * Pseudorandom generator for the seeds of soft nodes
+	 */
+	private SecureRandom random;
+
+	/**
+	 * Openings of the hard commitments to keep up to date (null if there are
+	 * no openings stored)
+	 */
+	private Hashtable<OutputCommit, Element[]> openings;
+
+	/**
+	 * Logger to print messages to console
+	 */
+	private Logger logger = Logger
+			.getLogger("it.unisa.dia.jzks.zksqTMC.MerkleTreeCommitter");
+
+	/**
+	 * Constructor
+	 *
+	 * @param tree
+	 *            Merkle tree to commit
+	 * @param commitment
+	 *            Commitment information for internal nodes
+	 * @param pk
+	 *            Public key for internal nodes
+	 * @param commitmentLeaves
+	 *            Commitment information for leaf nodes
+	 * @param pkLeaves
+	 *            Public key for leaf nodes
+	 * @param utils
+	 *            Object needed to perform some operations
+	 * @param random
+	 *            Pseudorandom generator for the seeds of soft nodes
+	 */
+	public MerkleTreeCommitter(MerkleTree tree, Commitment commitment,
+			ArrayList<Element> pk, Commitment commitmentLeaves,
+			ArrayList<Element> pkLeaves, Utils utils, SecureRandom random) {
+		this.tree = tree;
+		this.commitment = commitment;
+		this.pk = pk;
+		this.commitmentLeaves = commitmentLeaves;
+		this.pkLeaves = pkLeaves;
+		this.utils = utils;
+		this.random = random;
+	}
+
+	/**
+	 * Set the openings to keep up to date while the commitments change
+	 *
+	 * @param openings
+	 *            Openings Wi of the hard commitments, by commitment
+	 */
+	public void setOpenings(Hashtable<OutputCommit, Element[]> openings) {
+		this.openings = openings;
+	}
+
+	/**
+	 * Standard commitment of a database value for a leaf
+	 *
+	 * @param value
+	 *            The value of the key
+	 * @return the leaf commitment
+	 */
+	public OutputCommit commitLeaf(Object value) {
+		ArrayList<Element> message = new ArrayList<Element>();
+
+		// TODO
+		message.add(commitmentLeaves.getZr().newOneElement());
+		message.add(leafMessage(value));
+
+		return commitmentLeaves.qHCom(pkLeaves, message);
+	}
+
+	/**
+	 * Message committed in a leaf for a database value
+	 *
+	 * @param value
+	 *            The value of the key
+	 * @return the message
+	 */
+	private Element leafMessage(Object value) {
+		byte[] valueHash = utils.makeHashValue(value);
+		Element m = commitmentLeaves.getZr().newElement();
+		m.set(new BigInteger(valueHash));
+		return m;
+	}
+
+	/**
+	 * Commit an internal node: a node with children gets a hard commitment to
+	 * the children hashes (empty leaves get a zero commitment first, the
+	 * missing children are derived from the node seed), a node without
+	 * children gets a soft commitment. Both get a new seed.
+	 * 
+	 * @param nodePos
+	 *            Position of the internal node
+	 */
+	public void commitNode(Position<MerkleNode> nodePos) {
+		InternalMerkleNode node = (InternalMerkleNode) nodePos.element();
+		if (logger.isLoggable(Level.INFO))
+			logger.info("Commit " + node.getIndex() + " - "
+					+ node.getNodePath());
+		OutputCommit outputCommit = null;
+
+		byte[] seed = new byte[16];
+		random.nextBytes(seed);
+		node.setSeed(seed);
+
+		if (tree.numberOfChildren(nodePos) > 0) {
+
+			ArrayList<Element> message = new ArrayList<Element>();
+
+			// TODO
+			message.add(commitment.getZr().newZeroElement());
+
+			for (int i = 1; i <= tree.getQ(); i++)
+				message.add(null);
+
+			Iterator<Position<MerkleNode>> iterChild = tree.children(nodePos)
+					.iterator();
+			while (iterChild.hasNext()) {
+				Position<MerkleNode> current = iterChild.next();
+
+				// Zero commitment in empty leaves
+				if (current.element() instanceof ExternalMerkleNode) {
+					ExternalMerkleNode element = (ExternalMerkleNode) current
+							.element();
+					if (element.getKey().equals(MerkleNode.EMPTY_KEY))
+						emptyLeaf(current);
+				}
+
+				message.set(current.element().getIndex(),
+						nodeMessage(current.element()));
+			}
+
+			// virtual children
+			boolean leaves = tree.hasLeaves(nodePos);
+			for (int i = 1; i <= tree.getQ(); i++)
+				if (message.get(i) == null)
+					message.set(i, nodeMessage(virtualChild(node, i, leaves)));
+
+			outputCommit = commitment.qHCom(pk, message);
+			node.setFlag(LibertYung_qTMC.HARD_COMMITMENT);
+
+		} else {
+			outputCommit = commitment.qSCom(pk);
+			node.setFlag(LibertYung_qTMC.SOFT_COMMITMENT);
+		}
+
+		if (openings != null && node.getCommitment() != null)
+			openings.remove(node.getCommitment());
+		node.setCommitment(outputCommit);
+
+		tree.replace(nodePos, node);
+	}
+
+	/**
+	 * Derive a child that is not in the tree from the seed of its parent: an
+	 * empty leaf with a zero commitment, or an internal node with a soft
+	 * commitment and a seed for its own children. The same parent seed and
+	 * index always give the same child, so the child is built again when it
+	 * is needed by a proof instead of being stored.
+	 * 
+	 * @param parent
+	 *            The parent node, with a seed
+	 * @param index
+	 *            Index of the child (from 1 to q)
+	 * @param leaf
+	 *            true to derive an empty leaf, false for an internal node
+	 * @return the child (it does not belong to the tree)
+	 */
+	public MerkleNode virtualChild(InternalMerkleNode parent, int index,
+			boolean leaf) {
+		SecureRandom childRandom = utils.getNewRandomGenerator(Utils.PR_ALGO);
+		childRandom.setSeed(parent.getSeed());
+		childRandom.setSeed(BigInteger.valueOf(index).toByteArray());
+
+		int bits = commitment.getZr().getOrder().bitLength();
+		BigInteger gamma = new BigInteger(bits, childRandom);
+		BigInteger teta = new BigInteger(bits, childRandom);
+
+		MerkleNode child;
+		if (leaf) {
+			// the messages are indexed from 1, the first one is only a
+			// placeholder and it is not committed; an empty leaf commits
+			// to zero, as the stored ones
+			ArrayList<Element> m = new ArrayList<Element>();
+			m.add(commitmentLeaves.getZr().newZeroElement());
+			m.add(commitmentLeaves.getZr().newZeroElement());
+
+			ExternalMerkleNode empty = new ExternalMerkleNode();
+			empty.setKey(MerkleNode.EMPTY_KEY);
+			empty.setCommitment(commitmentLeaves.qHComPr(pkLeaves, m, gamma,
+					teta));
+			child = empty;
+		} else {
+			InternalMerkleNode soft = new InternalMerkleNode();
+			soft.setCommitment(commitment.qSComPr(pk, gamma, teta));
+			soft.setFlag(LibertYung_qTMC.SOFT_COMMITMENT);
+			byte[] seed = new byte[16];
+			childRandom.nextBytes(seed);
+			soft.setSeed(seed);
+			child = soft;
+		}
+		child.setIndex(index);
+		child.setNodePath(parent.getNodePath().child(index, tree.getBitNode()));
+		return child;
+	}
+
+	/**
+	 * Commit all the internal nodes of the tree on a pool of threads. The
+	 * commitment of a node only depends on the hashes of its children, so the
+	 * nodes are committed level by level from the deepest one, and the nodes
+	 * of a level are committed concurrently. The levels are built in one visit
+	 * of the tree, each one from the children of the previous one, and their
+	 * nodes are handed to the pool a batch at a time.
+	 * 
+	 * @param threads
+	 *            Number of threads
+	 * @throws InterruptedException
+	 *             Interrupted while waiting for a level
+	 */
+	public void commitAll(int threads) throws InterruptedException {
+		int batch = 64 * threads;
+		ArrayList<ArrayList<Position<MerkleNode>>> levels = internalLevels();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			for (int depth = levels.size() - 1; depth >= 0; depth--) {
+				ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+				for (final Position<MerkleNode> nodePos : levels.get(depth)) {
+					tasks.add(Executors.callable(new Runnable() {
+						public void run() {
+							commitNode(nodePos);
+						}
+					}));
+					if (tasks.size() == batch) {
+						invokeAll(executor, tasks);
+						tasks.clear();
+					}
+				}
+
+				invokeAll(executor, tasks);
+				// a committed level is not needed any more
+				levels.set(depth, null);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Internal nodes of the tree grouped by depth: the nodes of a level are the
+	 * children of the nodes of the previous one that are not parents of leaves
+	 * 
+	 * @return the internal nodes of each depth, from the root
+	 */
+	private ArrayList<ArrayList<Position<MerkleNode>>> internalLevels() {
+		ArrayList<ArrayList<Position<MerkleNode>>> levels = new ArrayList<ArrayList<Position<MerkleNode>>>();
+		ArrayList<Position<MerkleNode>> level = new ArrayList<Position<MerkleNode>>();
+		level.add(tree.root());
+		while (!level.isEmpty()) {
+			levels.add(level);
+			ArrayList<Position<MerkleNode>> next = new ArrayList<Position<MerkleNode>>();
+			for (Position<MerkleNode> node : level)
+				if (tree.numberOfChildren(node) > 0 && !tree.hasLeaves(node))
+					for (Position<MerkleNode> child : tree.children(node))
+						next.add(child);
+			level = next;
+		}
+		return levels;
+	}
+
+	/**
+	 * Standard commitments of many database values, computed on a pool of
+	 * threads
+	 * 
+	 * @param keys
+	 *            The keys to commit
+	 * @param database
+	 *            The value of every key
+	 * @param threads
+	 *            Number of threads
+	 * @return the leaf commitments, in the same order as the keys
+	 * @throws InterruptedException
+	 *             Interrupted while waiting for the commitments
+	 */
+	public OutputCommit[] commitLeaves(final String[] keys,
+			final Map<String, Object> database, int threads)
+			throws InterruptedException {
+		final OutputCommit[] leaves = new OutputCommit[keys.length];
+
+		// a few chunks for each thread, so that millions of keys do not
+		// become millions of tasks
+		int chunks = Math.min(keys.length, 4 * threads);
+		ArrayList<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for (int c = 0; c < chunks; c++) {
+			final int from = (int) ((long) keys.length * c / chunks);
+			final int to = (int) ((long) keys.length * (c + 1) / chunks);
+			tasks.add(Executors.callable(new Runnable() {
+				public void run() {
+					for (int i = from; i < to; i++)
+						leaves[i] = commitLeaf(database.get(keys[i]));
+				}
+			}));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			invokeAll(executor, tasks);
+		} finally {
+			executor.shutdown();
+		}
+		return leaves;
+	}
+
+	/**
+	 * Run some tasks and wait for all of them; an exception thrown by a task
+	 * is thrown again
+	 * 
+	 * @param executor
+	 *            The thread pool
+	 * @param tasks
+	 *            The tasks to run
+	 * @throws InterruptedException
+	 *             Interrupted while waiting for the tasks
+	 */
+	private void invokeAll(ExecutorService executor,
+			ArrayList<Callable<Object>> tasks) throws InterruptedException {
+		List<Future<Object>> results = executor.invokeAll(tasks);
+		Iterator<Future<Object>> resultIter = results.iterator();
+		while (resultIter.hasNext()) {
+			try {
+				resultIter.next().get();
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof Error)
+					throw (Error) e.getCause();
+				throw (RuntimeException) e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Replace a leaf with an empty leaf with a zero commitment
+	 *
+	 * @param leaf
+	 *            Position of the leaf
+	 */
+	private void emptyLeaf(Position<MerkleNode> leaf) {
+		MerkleNode element = leaf.element();
+		if (logger.isLoggable(Level.INFO))
+			logger.info("Zero commitment " + element.getNodePath());
+
+		ArrayList<Element> m = new ArrayList<Element>();
+		// TODO
+		m.add(commitmentLeaves.getZr().newZeroElement());
+		m.add(commitmentLeaves.getZr().newZeroElement());
+
+		OutputCommit oc = commitmentLeaves.qHCom(pkLeaves, m);
+
+		ExternalMerkleNode newElement = new ExternalMerkleNode();
+		newElement.setIndex(element.getIndex());
+		newElement.setKey(MerkleNode.EMPTY_KEY);
+		newElement.setNodePath(element.getNodePath());
+		newElement.setCommitment(oc);
+		tree.replace(leaf, newElement);
+	}
+
+	/**
+	 * Message committed in the parent for a node
+	 *
+	 * @param node
+	 *            The child node
+	 * @return the hash of the node commitment as a Zr element
+	 */
+	private Element nodeMessage(MerkleNode node) {
+		byte[] valueHash = utils.internalNodeHash(node);
+		Element m = commitment.getZr().newElement();
+		m.set(new BigInteger(valueHash));
+		return m;
+	}
+
+	/**
+	 * Insert a new key into a committed tree: only the nodes created on the
+	 * key path are committed, the soft frontier node becomes hard and its
+	 * ancestors are updated in the slot of the changed child
+	 *
+	 * @param key
+	 *            The new key
+	 * @param value
+	 *            The value of the key
+	 * @return Position of the new leaf
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid, or the key is already in the tree
+	 */
+	public Position<MerkleNode> insert(String key, Object value)
+			throws InvalidExternalMerkleNodeException, MalformedTreeException {
+		Position<MerkleNode> leaf = insertLeaf(key, value);
+
+		Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>> dirty = new Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>>();
+		ArrayList<ArrayList<Position<MerkleNode>>> levels = new ArrayList<ArrayList<Position<MerkleNode>>>();
+		markDirty(leaf, dirty, levels);
+		recommit(dirty, levels);
+		return leaf;
+	}
+
+	/**
+	 * Replace the value of a key: the leaf message is updated in place and so
+	 * are its ancestors, one exponentiation per level
+	 *
+	 * @param key
+	 *            The key to update
+	 * @param value
+	 *            The new value of the key
+	 * @return Position of the leaf, null if the key is not in the tree
+	 */
+	public Position<MerkleNode> update(String key, Object value) {
+		Position<MerkleNode> leaf = findLeaf(key);
+		if (leaf == null)
+			return null;
+
+		updateLeaf(leaf, value);
+
+		Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>> dirty = new Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>>();
+		ArrayList<ArrayList<Position<MerkleNode>>> levels = new ArrayList<ArrayList<Position<MerkleNode>>>();
+		markDirty(leaf, dirty, levels);
+		recommit(dirty, levels);
+		return leaf;
+	}
+
+	/**
+	 * Remove a key: its leaf becomes an empty leaf with a zero commitment and
+	 * the ancestors are updated, one exponentiation per level
+	 *
+	 * @param key
+	 *            The key to remove
+	 * @return Position of the emptied leaf, null if the key is not in the tree
+	 */
+	public Position<MerkleNode> delete(String key) {
+		Position<MerkleNode> leaf = findLeaf(key);
+		if (leaf == null)
+			return null;
+
+		logger.info("Deleting " + key);
+		emptyLeaf(leaf);
+
+		Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>> dirty = new Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>>();
+		ArrayList<ArrayList<Position<MerkleNode>>> levels = new ArrayList<ArrayList<Position<MerkleNode>>>();
+		markDirty(leaf, dirty, levels);
+		recommit(dirty, levels);
+		return leaf;
+	}
+
+	/**
+	 * Apply many changes at once: the leaves are changed first and their
+	 * ancestors are marked, then every marked node is recommitted exactly once,
+	 * from the deepest level up to the root. The cost is proportional to the
+	 * union of the changed paths instead of their sum.
+	 *
+	 * @param changes
+	 *            The new value of every changed key (inserted if the key is
+	 *            not in the tree, updated otherwise); a null value removes the
+	 *            key
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid (the changes applied before the error are
+	 *             committed anyway)
+	 */
+	public void apply(Map<String, Object> changes)
+			throws InvalidExternalMerkleNodeException, MalformedTreeException {
+		Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>> dirty = new Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>>();
+		ArrayList<ArrayList<Position<MerkleNode>>> levels = new ArrayList<ArrayList<Position<MerkleNode>>>();
+
+		try {
+			// updates and removals first, so that inserts can reuse the
+			// emptied leaves
+			ArrayList<String> inserts = new ArrayList<String>();
+			Iterator<Map.Entry<String, Object>> it = changes.entrySet()
+					.iterator();
+			while (it.hasNext()) {
+				Map.Entry<String, Object> change = it.next();
+				String key = change.getKey();
+				Position<MerkleNode> leaf = findLeaf(key);
+				if (leaf == null) {
+					if (change.getValue() != null)
+						inserts.add(key);
+					else
+						logger.warning("Key not found: " + key);
+					continue;
+				}
+
+				if (change.getValue() == null) {
+					logger.info("Deleting " + key);
+					emptyLeaf(leaf);
+				} else
+					updateLeaf(leaf, change.getValue());
+				markDirty(leaf, dirty, levels);
+			}
+
+			Iterator<String> keys = inserts.iterator();
+			while (keys.hasNext()) {
+				String key = keys.next();
+				markDirty(insertLeaf(key, changes.get(key)), dirty, levels);
+			}
+		} finally {
+			recommit(dirty, levels);
+		}
+	}
+
+	/**
+	 * Add the leaf of a new key to the tree, without committing the nodes
+	 * created on its path
+	 *
+	 * @param key
+	 *            The new key
+	 * @param value
+	 *            The value of the key
+	 * @return Position of the new leaf
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid, or the key is already in the tree
+	 */
+	private Position<MerkleNode> insertLeaf(String key, Object value)
+			throws InvalidExternalMerkleNodeException, MalformedTreeException {
+		logger.info("Inserting " + key);
+
+		ExternalMerkleNode node = new ExternalMerkleNode();
+		node.setCommitment(commitLeaf(value));
+		node.setKey(key);
+		return tree.insert(node, keyPath(key), 0);
+	}
+
+	/**
+	 * Replace the message of a leaf in place
+	 *
+	 * @param leaf
+	 *            Position of the leaf
+	 * @param value
+	 *            The new value of the key
+	 */
+	private void updateLeaf(Position<MerkleNode> leaf, Object value) {
+		logger.info("Updating "
+				+ ((ExternalMerkleNode) leaf.element()).getKey());
+
+		commitmentLeaves.updateMessage(pkLeaves, leaf.element()
+				.getCommitment(), 1, leafMessage(value));
+	}
+
+	/**
+	 * Mark the ancestors of a changed node, recording in every ancestor the
+	 * child on the path; the walk stops at the first ancestor already marked
+	 * for the same child
+	 *
+	 * @param nodePos
+	 *            Position of the changed node
+	 * @param dirty
+	 *            Changed children of every marked node
+	 * @param levels
+	 *            Marked nodes by depth
+	 */
+	private void markDirty(Position<MerkleNode> nodePos,
+			Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>> dirty,
+			ArrayList<ArrayList<Position<MerkleNode>>> levels) {
+		ArrayList<Position<MerkleNode>> path = new ArrayList<Position<MerkleNode>>();
+		path.add(nodePos);
+		while (!tree.isRoot(nodePos)) {
+			nodePos = tree.parent(nodePos);
+			path.add(nodePos);
+		}
+
+		for (int k = 1; k < path.size(); k++) {
+			Position<MerkleNode> parentPos = path.get(k);
+			Position<MerkleNode> child = path.get(k - 1);
+			ArrayList<Position<MerkleNode>> children = dirty.get(parentPos);
+			if (children == null) {
+				children = new ArrayList<Position<MerkleNode>>();
+				dirty.put(parentPos, children);
+				int depth = path.size() - 1 - k;
+				while (levels.size() <= depth)
+					levels.add(new ArrayList<Position<MerkleNode>>());
+				levels.get(depth).add(parentPos);
+			} else if (children.contains(child))
+				break;
+			children.add(child);
+		}
+	}
+
+	/**
+	 * Recommit the marked nodes, deepest first: new nodes and soft nodes that
+	 * got children are committed from scratch, hard nodes are updated only in
+	 * the slots of the changed children
+	 *
+	 * @param dirty
+	 *            Changed children of every marked node
+	 * @param levels
+	 *            Marked nodes by depth
+	 */
+	private void recommit(
+			Hashtable<Position<MerkleNode>, ArrayList<Position<MerkleNode>>> dirty,
+			ArrayList<ArrayList<Position<MerkleNode>>> levels) {
+		for (int depth = levels.size() - 1; depth >= 0; depth--) {
+			Iterator<Position<MerkleNode>> nodeIter = levels.get(depth)
+					.iterator();
+			while (nodeIter.hasNext()) {
+				Position<MerkleNode> nodePos = nodeIter.next();
+				InternalMerkleNode node = (InternalMerkleNode) nodePos
+						.element();
+
+				if (node.getCommitment() == null
+						|| node.getFlag() == LibertYung_qTMC.SOFT_COMMITMENT)
+					commitNode(nodePos);
+				else {
+					Iterator<Position<MerkleNode>> iterChild = dirty.get(
+							nodePos).iterator();
+					while (iterChild.hasNext()) {
+						MerkleNode child = iterChild.next().element();
+						updateSlot(node, child.getIndex(), nodeMessage(child));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if a key has a leaf in the tree
+	 *
+	 * @param key
+	 *            The key to find
+	 * @return true if the key is in the tree, false otherwise
+	 */
+	public boolean contains(String key) {
+		return findLeaf(key) != null;
+	}
+
+	/**
+	 * Path of a key into the tree
+	 *
+	 * @param key
+	 *            The key
+	 * @return the path of the key hash
+	 */
+	private KeyPath keyPath(String key) {
+		return tree.keyPath(utils.makeHashValue(key));
+	}
+
+	/**
+	 * Find the deepest node of the tree on a path
+	 *
+	 * @param path
+	 *            The path to follow
+	 * @return Position of the last node found
+	 */
+	private Position<MerkleNode> deepestNode(KeyPath path) {
+		Position<MerkleNode> node = tree.root();
+		int bitNode = tree.getBitNode();
+		int cursor = 0;
+		while ((cursor + bitNode) <= path.length()) {
+			Position<MerkleNode> child = tree.findChild(node, path.index(
+					cursor, bitNode));
+			if (child == null)
+				break;
+			node = child;
+			cursor += bitNode;
+		}
+		return node;
+	}
+
+	/**
+	 * Find the leaf of a key
+	 *
+	 * @param key
+	 *            The key to find
+	 * @return Position of the leaf, null if the key is not in the tree
+	 */
+	private Position<MerkleNode> findLeaf(String key) {
+		Position<MerkleNode> node = deepestNode(keyPath(key));
+		if (node.element() instanceof ExternalMerkleNode
+				&& ((ExternalMerkleNode) node.element()).getKey().equals(key))
+			return node;
+		return null;
+	}
+
+	/**
+	 * Replace the message in a slot of a hard commitment, and update the
+	 * openings stored for it
+	 *
+	 * @param node
+	 *            Internal node with a hard commitment
+	 * @param j
+	 *            Index of the slot
+	 * @param m
+	 *            The new message
+	 */
+	private void updateSlot(InternalMerkleNode node, int j, Element m) {
+		OutputCommit outputCommit = node.getCommitment();
+		ArrayList<Element> aux = outputCommit.getAux();
+		Element old = aux.get(j).duplicate();
+
+		commitment.updateMessage(pk, outputCommit, j, m);
+
+		Element[] W = (openings == null) ? null : openings.get(outputCommit);
+		if (W != null) {
+			// the stored arrays are read without locks: a copy is updated
+			// and it replaces the stored one
+			W = W.clone();
+			int[] indexes = new int[W.length];
+			for (int i = 0; i < W.length; i++)
+				indexes[i] = i + 1;
+			commitment.updateOpenings(pk, W, indexes, j, old, m, aux.get(aux
+					.size() - 1));
+			openings.put(outputCommit, W);
+		}
+	}
+
+}
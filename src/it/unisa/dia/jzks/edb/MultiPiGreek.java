@@ -0,0 +1,228 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.edb;
+
+import it.unisa.dia.gas.plaf.jpbc.field.curve.CurveElement;
+import it.unisa.dia.gas.plaf.jpbc.field.curve.CurveField;
+import it.unisa.dia.gas.plaf.jpbc.field.generic.GenericElement;
+import it.unisa.dia.gas.plaf.jpbc.field.naive.NaiveElement;
+import it.unisa.dia.gas.plaf.jpbc.field.naive.NaiveField;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.xml.DomDriver;
+import com.thoughtworks.xstream.io.xml.XppReader;
+
+/**
+ * Opening result of many keys: the evidences of the nodes shared by the key
+ * paths are stored once. Every evidence refers to the evidence of its parent
+ * (the parents come before their children), and every key refers to the
+ * evidence of its leaf, so the path of a key is followed from its leaf up to
+ * the root.
+ */
+public class MultiPiGreek extends ArrayList<SharedEvidence> {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Index of the leaf evidence of every key
+	 */
+	private LinkedHashMap<String, Integer> leaves = new LinkedHashMap<String, Integer>();
+
+	/**
+	 * Values of the keys found
+	 */
+	private HashMap<String, Object> values = new HashMap<String, Object>();
+
+	/**
+	 * Index of the evidences already stored, by kind, by parent evidence and by
+	 * the child they open (not saved: it is rebuilt from the evidences when a
+	 * loaded object gets new proofs)
+	 */
+	private transient HashMap<String, Integer> positions;
+
+	/**
+	 * Add the proof of a key: the evidences already stored for another key are
+	 * not added again
+	 *
+	 * @param proof
+	 *            The proof of the key
+	 */
+	public void addProof(PiGreek proof) {
+		if (positions == null)
+			indexPositions();
+
+		// an evidence opens a node for a child (the leaf for the last one), so
+		// its parent evidence and the child index identify it: the path is
+		// followed from the root, and the new evidences are added after their
+		// parent
+		boolean hard = proof.isFound();
+		int parent = -1;
+		for (int j = proof.size() - 1; j >= 0; j--) {
+			String id = id(hard, j == 0, parent, proof.get(j).getIndex());
+			Integer position = positions.get(id);
+			if (position == null) {
+				SharedEvidence evidence = new SharedEvidence(proof.get(j), hard);
+				evidence.setParent(parent);
+				position = size();
+				add(evidence);
+				positions.put(id, position);
+			}
+			parent = position;
+		}
+
+		leaves.put(proof.getKey(), parent);
+		if (hard)
+			values.put(proof.getKey(), proof.getValue());
+	}
+
+	/**
+	 * Build the index of the evidences stored (all of them for a loaded
+	 * object)
+	 */
+	private void indexPositions() {
+		positions = new HashMap<String, Integer>();
+		HashSet<Integer> leafPositions = new HashSet<Integer>(leaves.values());
+		for (int k = 0; k < size(); k++) {
+			SharedEvidence evidence = get(k);
+			positions.put(id(evidence.isHard(), leafPositions.contains(k),
+					evidence.getParent(), evidence.getIndex()), k);
+		}
+	}
+
+	/**
+	 * Identifier of an evidence in the index
+	 *
+	 * @param hard
+	 *            true for the evidences of a key found
+	 * @param leaf
+	 *            true for the evidence of a leaf
+	 * @param parent
+	 *            Index of the parent evidence, -1 for the root
+	 * @param index
+	 *            Index of the child opened
+	 * @return the identifier
+	 */
+	private static String id(boolean hard, boolean leaf, int parent, int index) {
+		return (hard ? "H" : "S") + (leaf ? "L" : "N") + parent + "/" + index;
+	}
+
+	/**
+	 * Get the keys of the proofs
+	 *
+	 * @return the keys
+	 */
+	public Set<String> getKeys() {
+		return leaves.keySet();
+	}
+
+	/**
+	 * Get the index of the leaf evidence of a key
+	 *
+	 * @param key
+	 *            The key
+	 * @return the index of the leaf evidence, -1 if there is no proof for the
+	 *         key
+	 */
+	public int getLeaf(String key) {
+		Integer leaf = leaves.get(key);
+		return (leaf == null) ? -1 : leaf;
+	}
+
+	/**
+	 * Get the value of a key found
+	 *
+	 * @param key
+	 *            The key
+	 * @return the value, null if the key was not found
+	 */
+	public Object getValue(String key) {
+		return values.get(key);
+	}
+
+	/**
+	 * Set the elements of the object XStream that are used into the file xml to
+	 * save the proofs
+	 *
+	 * @return XStream object
+	 */
+	private static XStream getXStream() {
+		XStream xstream = new XStream(new DomDriver());
+
+		xstream.processAnnotations(MultiPiGreek.class);
+
+		// the evidences of a node share its C and V
+		xstream.setMode(XStream.ID_REFERENCES);
+
+		xstream.alias("NE", NaiveElement.class);
+		xstream.alias("CF", CurveField.class);
+		xstream.alias("CE", CurveElement.class);
+		xstream.alias("NF", NaiveField.class);
+		xstream.alias("GE", GenericElement.class);
+
+		xstream.omitField(NaiveElement.class, "secureRandom");
+		xstream.omitField(CurveElement.class, "random");
+		xstream.omitField(NaiveElement.class, "order");
+		xstream.omitField(NaiveElement.class, "oddOrder");
+		xstream.omitField(NaiveField.class, "nqr");
+
+		return xstream;
+	}
+
+	/**
+	 * Load the object from a XML file
+	 *
+	 * @param path
+	 *            The path where the data are stored
+	 * @throws FileNotFoundException
+	 *             The path is not valid
+	 */
+	public static MultiPiGreek loadFromXML(String path)
+			throws FileNotFoundException {
+		XStream xstream = getXStream();
+
+		XppReader xmlReader = new XppReader(new FileReader(path));
+
+		return (MultiPiGreek) xstream.unmarshal(xmlReader);
+	}
+
+	/**
+	 * Load the object from a XML byte array
+	 *
+	 * @param xml
+	 *            XML byte array
+	 */
+	public static MultiPiGreek loadFromXML(byte[] xml) {
+		XStream xstream = getXStream();
+
+		return (MultiPiGreek) xstream.fromXML(new String(xml));
+	}
+
+	/**
+	 * Store all the proofs into a file XML
+	 *
+	 * @param path
+	 *            The path where the data will be stored
+	 * @param ENCODING
+	 *            Encoding to write the file
+	 */
+	public void saveToXML(String path, String ENCODING) {
+		XStream xstream = getXStream();
+
+		PrintWriter writer = Utils
+				.getPrintWriter(path, ENCODING, xstream, this);
+		writer.flush();
+		writer.close();
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.edb;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.jzks.merkleTree.MerkleNode;
+import it.unisa.dia.jzks.merkleTree.NodePath;
+
+import java.util.HashMap;
+
+/**
+ * Openings and derived nodes shared by the proofs of a batch of keys. The
+ * opening of a node for one of its children depends only on the child, so
+ * the evidences are stored by the child path: the proofs of the keys under
+ * the same child read the evidence instead of opening the node again. The
+ * cache belongs to a single batch and it is not thread-safe.
+ */
+class ProofCache {
+
+	/**
+	 * Evidences of the hard openings (proofs of membership), by child path
+	 */
+	private HashMap<NodePath, Evidence> hardEvidences = new HashMap<NodePath, Evidence>();
+
+	/**
+	 * Evidences of the soft openings (proofs of non membership), by child path
+	 */
+	private HashMap<NodePath, Evidence> softEvidences = new HashMap<NodePath, Evidence>();
+
+	/**
+	 * Nodes derived from the seeds, by path
+	 */
+	private HashMap<NodePath, MerkleNode> virtualNodes = new HashMap<NodePath, MerkleNode>();
+
+	/**
+	 * Get the evidence of the opening of a node for a child
+	 *
+	 * @param child
+	 *            The child
+	 * @param hard
+	 *            true for a hard opening, false for a soft one
+	 * @return a copy of the evidence, null if it is not in the cache
+	 */
+	Evidence getEvidence(MerkleNode child, boolean hard) {
+		NodePath path = child.getNodePath();
+		if (path == null)
+			return null;
+		Evidence evidence = (hard ? hardEvidences : softEvidences).get(path);
+		if (evidence == null)
+			return null;
+
+		// the proofs do not share the openings, as they do not share the
+		// stored ones
+		Element[] opening = evidence.getOpening().clone();
+		for (int i = 0; i < opening.length; i++)
+			if (opening[i] != null)
+				opening[i] = opening[i].duplicate();
+		return new Evidence(evidence.getC(), evidence.getV(), opening,
+				evidence.getIndex());
+	}
+
+	/**
+	 * Store the evidence of the opening of a node for a child
+	 *
+	 * @param child
+	 *            The child
+	 * @param hard
+	 *            true for a hard opening, false for a soft one
+	 * @param evidence
+	 *            The evidence
+	 */
+	void putEvidence(MerkleNode child, boolean hard, Evidence evidence) {
+		NodePath path = child.getNodePath();
+		if (path != null)
+			(hard ? hardEvidences : softEvidences).put(path, evidence);
+	}
+
+	/**
+	 * Get a node derived from the seeds
+	 *
+	 * @param path
+	 *            The node path
+	 * @return the node, null if it is not in the cache
+	 */
+	MerkleNode getVirtualNode(NodePath path) {
+		return virtualNodes.get(path);
+	}
+
+	/**
+	 * Store a node derived from the seeds
+	 *
+	 * @param node
+	 *            The node
+	 */
+	void putVirtualNode(MerkleNode node) {
+		virtualNodes.put(node.getNodePath(), node);
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.edb;
+
+/**
+ * Evidence of a {@link MultiPiGreek}: the opening of a node for one of its
+ * children, shared by all the keys whose path passes through that child. It
+ * refers to the evidence of the parent node instead of being followed by it.
+ */
+public class SharedEvidence extends Evidence {
+
+	/**
+	 * Index of the evidence of the parent node, -1 for the root
+	 */
+	private int parent = -1;
+
+	/**
+	 * true for a hard opening (proofs of membership), false for a soft one
+	 */
+	private boolean hard;
+
+	/**
+	 * Constructor
+	 *
+	 * @param evidence
+	 *            The evidence of a proof
+	 * @param hard
+	 *            true for a hard opening, false for a soft one
+	 */
+	public SharedEvidence(Evidence evidence, boolean hard) {
+		super(evidence.getC(), evidence.getV(), evidence.getOpening(),
+				evidence.getIndex());
+		this.hard = hard;
+	}
+
+	/**
+	 * @return the index of the evidence of the parent node, -1 for the root
+	 */
+	public int getParent() {
+		return parent;
+	}
+
+	/**
+	 * @param parent
+	 *            the index of the evidence of the parent node, -1 for the root
+	 */
+	public void setParent(int parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * @return true for a hard opening, false for a soft one
+	 */
+	public boolean isHard() {
+		return hard;
+	}
+
+	/**
+	 * @param hard
+	 *            true for a hard opening, false for a soft one
+	 */
+	public void setHard(boolean hard) {
+		this.hard = hard;
+	}
+
+}
@@ -4,7 +4,10 @@
  */
 package it.unisa.dia.jzks.edb;
 
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.plaf.jpbc.field.curve.CurveElement;
 import it.unisa.dia.jzks.merkleTree.MerkleNode;
+import it.unisa.dia.jzks.qTMC.OutputCommit;
 
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
@@ -12,9 +15,11 @@ import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,15 +33,26 @@ import com.thoughtworks.xstream.io.xml.CompactWriter;
 public class Utils {
 
 	/**
-	 * Message digest
+	 * Message digest of each thread, shared by all the instances with the
+	 * same hash algorithm
 	 */
-	private MessageDigest md;
+	private ThreadLocal<MessageDigest> digests;
+
+	/**
+	 * Digest length in bytes
+	 */
+	private int digestLength;
 
 	/**
 	 * Hash algorithm: MD5 SHA-1 SHA-256 SHA-384 and SHA-512
 	 */
 	private String hashAlgo = DEFAULT_HASH_ALGO;
 
+	/**
+	 * Version of the encoding hashed for the nodes
+	 */
+	private int hashVersion = HASH_VERSION;
+
 	/**
 	 * Logger to print messages to console
 	 */
@@ -52,6 +68,83 @@ public class Utils {
 	 */
 	public static final String PR_ALGO = "SHA1PRNG";
 
+	/**
+	 * Encoding of the first releases: the internal nodes are hashed as the
+	 * serialized String of the decimal coordinates of C and V, the keys and
+	 * the values as serialized objects
+	 */
+	public static final int HASH_VERSION_STRING = 0;
+
+	/**
+	 * The internal nodes are hashed as the bytes of C and V (both coordinates
+	 * of the points of a curve)
+	 */
+	public static final int HASH_VERSION_BYTES = 1;
+
+	/**
+	 * As {@link #HASH_VERSION_BYTES}, and the keys and the values are hashed
+	 * from their type encoding: UTF-8 for the Strings, the bytes themselves
+	 * for the byte arrays, the registered encoders for the other types
+	 */
+	public static final int HASH_VERSION_TYPED = 2;
+
+	/**
+	 * Encoding used for the new trees
+	 */
+	public static final int HASH_VERSION = HASH_VERSION_TYPED;
+
+	/**
+	 * Tag of the point at infinity in the node encoding
+	 */
+	private static final byte TAG_INFINITY = 0;
+
+	/**
+	 * Tag of a point in the node encoding
+	 */
+	private static final byte TAG_POINT = 1;
+
+	/**
+	 * Tag of any other element in the node encoding
+	 */
+	private static final byte TAG_ELEMENT = 2;
+
+	/**
+	 * Tag of a String value
+	 */
+	private static final byte TAG_STRING = 3;
+
+	/**
+	 * Tag of a byte array value
+	 */
+	private static final byte TAG_BYTES = 4;
+
+	/**
+	 * Tag of a value with a registered encoder
+	 */
+	private static final byte TAG_ENCODED = 5;
+
+	/**
+	 * Tag of a serialized value
+	 */
+	private static final byte TAG_OBJECT = 6;
+
+	/**
+	 * Charset of the String values
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Encoders of the value types
+	 */
+	private static final ConcurrentHashMap<Class<?>, ValueEncoder<?>> encoders = new ConcurrentHashMap<Class<?>, ValueEncoder<?>>();
+
+	/**
+	 * Message digests of each thread by hash algorithm: the instances built
+	 * for each proof (for example by the verifiers) reuse the digests of the
+	 * thread instead of creating new ones
+	 */
+	private static final ConcurrentHashMap<String, ThreadLocal<MessageDigest>> threadDigests = new ConcurrentHashMap<String, ThreadLocal<MessageDigest>>();
+
 	/**
 	 * Constructor
 	 * 
@@ -64,6 +157,22 @@ public class Utils {
 		setHashAlgo(hashAlgo);
 	}
 
+	/**
+	 * Constructor
+	 * 
+	 * @param hashAlgo
+	 *            Hash algorithm
+	 * @param hashVersion
+	 *            Version of the encoding hashed for the nodes
+	 * @throws NoSuchAlgorithmException
+	 *             Hash algorithm not valid
+	 */
+	public Utils(String hashAlgo, int hashVersion)
+			throws NoSuchAlgorithmException {
+		this(hashAlgo);
+		setHashVersion(hashVersion);
+	}
+
 	/**
 	 * Constructor
 	 * 
@@ -80,7 +189,19 @@ public class Utils {
 	 * @return digest length
 	 */
 	public int getDigestLength() {
-		return (md.getDigestLength() * 8);
+		return (digestLength * 8);
+	}
+
+	/**
+	 * Return the message digest of the calling thread, so the same object can
+	 * hash on many threads without locks
+	 * 
+	 * @return the reset message digest
+	 */
+	private MessageDigest digest() {
+		MessageDigest md = digests.get();
+		md.reset();
+		return md;
 	}
 
 	/**
@@ -91,27 +212,81 @@ public class Utils {
 	 * @return Digest value byte array
 	 */
 	public byte[] getDigestValue(byte[] b) {
-		md.reset();
+		MessageDigest md = digest();
 		md.update(b);
 		return md.digest();
 	}
 
 	/**
-	 * Generate the hash value of an object
+	 * Return the digest value of a tagged byte array
+	 * 
+	 * @param tag
+	 *            Tag of the encoding
+	 * @param b
+	 *            Byte array to hash
+	 * @return Digest value byte array
+	 */
+	private byte[] getDigestValue(byte tag, byte[] b) {
+		MessageDigest md = digest();
+		md.update(tag);
+		md.update(b);
+		return md.digest();
+	}
+
+	/**
+	 * Generate the hash value of an object: with {@link #HASH_VERSION_TYPED}
+	 * the Strings, the byte arrays and the types with a registered encoder
+	 * are hashed without serializing them
 	 * 
 	 * @param value
 	 *            The object
 	 * @return Hash value
-	 * @throws NoSuchAlgorithmException
-	 *             Hash algorithm not valid
 	 */
+	@SuppressWarnings("unchecked")
 	public byte[] makeHashValue(Object value) {
-		byte[] bytes = null;
-		md.reset();
-		md.update(getBytes(value));
+		if ((hashVersion < HASH_VERSION_TYPED) || (value == null))
+			return getDigestValue(getBytes(value));
+		if (value instanceof String)
+			return getDigestValue(TAG_STRING, ((String) value).getBytes(UTF8));
+		if (value instanceof byte[])
+			return getDigestValue(TAG_BYTES, (byte[]) value);
 
-		bytes = md.digest();
-		return bytes;
+		ValueEncoder<Object> encoder = (ValueEncoder<Object>) encoders
+				.get(value.getClass());
+		if (encoder == null)
+			return getDigestValue(TAG_OBJECT, getBytes(value));
+		// the class name keeps apart the encodings of different types
+		byte[] type = value.getClass().getName().getBytes(UTF8);
+		byte[] encoded = encoder.encode(value);
+		byte[] b = new byte[type.length + 1 + encoded.length];
+		System.arraycopy(type, 0, b, 0, type.length);
+		System.arraycopy(encoded, 0, b, type.length + 1, encoded.length);
+		return getDigestValue(TAG_ENCODED, b);
+	}
+
+	/**
+	 * Register the encoder of a value type, used by
+	 * {@link #makeHashValue(Object)} for the values of exactly that class. The
+	 * encoders are shared by all the instances, so the provers and the
+	 * verifiers hash the values in the same way; an encoder has to be
+	 * registered before the tree is built and it must not change later.
+	 * 
+	 * @param type
+	 *            The value class
+	 * @param encoder
+	 *            The encoder, null to remove the encoder of the class
+	 * @throws IllegalArgumentException
+	 *             The Strings and the byte arrays have their own encoding
+	 */
+	public static <T> void registerEncoder(Class<T> type,
+			ValueEncoder<? super T> encoder) {
+		if (type.equals(String.class) || type.equals(byte[].class))
+			throw new IllegalArgumentException("The encoding of "
+					+ type.getName() + " cannot be changed");
+		if (encoder == null)
+			encoders.remove(type);
+		else
+			encoders.put(type, encoder);
 	}
 
 	/**
@@ -146,10 +321,43 @@ public class Utils {
 	 * @return Byte array of hash value
 	 */
 	public byte[] internalNodeHash(MerkleNode node) {
-		StringBuffer stringtoHash = new StringBuffer();
-		stringtoHash.append(node.getCommitment().getC());
-		stringtoHash.append(node.getCommitment().getV());
-		return makeHashValue(stringtoHash.toString());
+		OutputCommit commitment = node.getCommitment();
+		if (hashVersion == HASH_VERSION_STRING) {
+			StringBuffer stringtoHash = new StringBuffer();
+			stringtoHash.append(commitment.getC());
+			stringtoHash.append(commitment.getV());
+			return makeHashValue(stringtoHash.toString());
+		}
+		return getDigestValue(commitment.getC(), commitment.getV());
+	}
+
+	/**
+	 * Return the digest value of the canonical encoding of some elements: a
+	 * tag byte followed by the element bytes (the two coordinates of a point,
+	 * not its compressed form: the sign of y needs the field order, which is
+	 * not saved with the proofs)
+	 * 
+	 * @param elements
+	 *            Elements to hash
+	 * @return Digest value byte array
+	 */
+	private byte[] getDigestValue(Element... elements) {
+		MessageDigest md = digest();
+		for (Element element : elements) {
+			if (element instanceof CurveElement) {
+				CurveElement<?> point = (CurveElement<?>) element;
+				if (point.isZero())
+					md.update(TAG_INFINITY);
+				else {
+					md.update(TAG_POINT);
+					md.update(point.toBytes());
+				}
+			} else {
+				md.update(TAG_ELEMENT);
+				md.update(element.toBytes());
+			}
+		}
+		return md.digest();
 	}
 
 	/**
@@ -205,9 +413,56 @@ public class Utils {
 	 * @throws NoSuchAlgorithmException
 	 *             Hash algorithm not found
 	 */
-	public void setHashAlgo(String hashAlgo) throws NoSuchAlgorithmException {
+	public void setHashAlgo(final String hashAlgo)
+			throws NoSuchAlgorithmException {
+		ThreadLocal<MessageDigest> algoDigests = threadDigests.get(hashAlgo);
+		if (algoDigests == null) {
+			MessageDigest.getInstance(hashAlgo);
+			algoDigests = new ThreadLocal<MessageDigest>() {
+				@Override
+				protected MessageDigest initialValue() {
+					try {
+						return MessageDigest.getInstance(hashAlgo);
+					} catch (NoSuchAlgorithmException e) {
+						// already checked by setHashAlgo
+						throw new IllegalStateException(e);
+					}
+				}
+			};
+			ThreadLocal<MessageDigest> previous = threadDigests.putIfAbsent(
+					hashAlgo, algoDigests);
+			if (previous != null)
+				algoDigests = previous;
+		}
+		digests = algoDigests;
+		digestLength = digests.get().getDigestLength();
 		this.hashAlgo = hashAlgo;
-		md = MessageDigest.getInstance(hashAlgo);
+	}
+
+	/**
+	 * Get the version of the encoding hashed for the nodes
+	 * 
+	 * @return the encoding version
+	 */
+	public int getHashVersion() {
+		return hashVersion;
+	}
+
+	/**
+	 * Set the version of the encoding hashed for the nodes: the trees built
+	 * with an older encoding are verified with their own version
+	 * 
+	 * @param hashVersion
+	 *            the encoding version, from {@link #HASH_VERSION_STRING} to
+	 *            {@link #HASH_VERSION}
+	 * @throws IllegalArgumentException
+	 *             Unknown version
+	 */
+	public void setHashVersion(int hashVersion) {
+		if ((hashVersion < HASH_VERSION_STRING) || (hashVersion > HASH_VERSION))
+			throw new IllegalArgumentException("Unknown hash version: "
+					+ hashVersion);
+		this.hashVersion = hashVersion;
 	}
 
 	/**
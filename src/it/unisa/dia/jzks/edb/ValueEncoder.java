@@ -0,0 +1,28 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.edb;
+
+/**
+ * Encoder of the values of a type into the bytes that are hashed: it lets
+ * {@link Utils#makeHashValue(Object)} skip the object serialization for the
+ * types registered with {@link Utils#registerEncoder(Class, ValueEncoder)}.
+ * The encoding must be deterministic and the same for the prover and the
+ * verifier.
+ *
+ * @param <T>
+ *            Type of the values
+ */
+public interface ValueEncoder<T> {
+
+	/**
+	 * Encode a value
+	 *
+	 * @param value
+	 *            The value (not null)
+	 * @return the bytes to hash
+	 */
+	public byte[] encode(T value);
+
+}
@@ -9,10 +9,13 @@ import it.unisa.dia.jzks.merkleTree.MerkleNode;
 import it.unisa.dia.jzks.merkleTree.RootMerkleNode;
 import it.unisa.dia.jzks.qTMC.Commitment;
 import it.unisa.dia.jzks.qTMC.OutputCommit;
+import it.unisa.dia.jzks.qTMC.VerificationTuple;
 
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -67,10 +70,7 @@ public class ZKSVerifier {
 		logger.info("Verifing " + key + " => " + piGreek.getValue() + " - "
 				+ piGreek.size());
 
-		this.commitment = root.getCommInfo().getCommitment();
-		utils = new Utils(root.getHashAlgo());
-
-		this.commitmentLeaves = root.getCommInfo().getCommitmentLeaves();
+		setRoot(root);
 
 		if (!piGreek.getKey().equals(key)) {
 			logger.severe("There is something wrong (key)!");
@@ -80,31 +80,218 @@ public class ZKSVerifier {
 
 		boolean found = piGreek.isFound();
 		ArrayList<Element> commitmentKeys = root.getPk();
-		ArrayList<Element> commitmentKeysLeaves = root.getPkLeaves();
+
+		Evidence evidence = piGreek.remove(0);
+
+		// LEAF
+		if (!verifyLeaf(evidence, found, piGreek.getValue(), root
+				.getPkLeaves())) {
+			logger.severe("There is something wrong (leaf)!");
+			throw new FailedZKSVerifyException("The proof is not valid");
+		}
+
+		// Internal nodes: the openings are collected and checked in one batch
+		ArrayList<VerificationTuple> tuples = new ArrayList<VerificationTuple>();
+		while (!piGreek.isEmpty()) {
+
+			Element mi = nodeMessage(evidence);
+
+			evidence = piGreek.remove(0);
+
+			Element C = evidence.getC();
+			Element V = evidence.getV();
+			// ROOT verifing
+			if (piGreek.isEmpty()) {
+				C = root.getCommitment().getC();
+				V = root.getCommitment().getV();
+			}
+			tuples.add(new VerificationTuple(C, V, mi, evidence.getIndex(),
+					evidence.getOpening()));
+		}
+
+		if (tuples.isEmpty()) {
+			logger.severe("There is something wrong (root)!");
+			throw new FailedZKSVerifyException("The proof is not valid");
+		}
+
+		boolean f;
+		if (found)
+			f = commitment.qHBatchVer(commitmentKeys, tuples);
+		else
+			f = commitment.qSBatchVer(commitmentKeys, tuples);
+		if (!f) {
+			logger.severe("There is something wrong! ");
+			throw new FailedZKSVerifyException("The proof is not valid");
+		}
+
+		logger.info("Verify OK");
+		return piGreek.getValue();
+	}
+
+	/**
+	 * Verify the proofs of many keys. Every evidence is checked once, however
+	 * many key paths pass through it: the leaves are checked key by key, then
+	 * the openings of all the internal nodes are checked in two batches (hard
+	 * and soft openings)
+	 * 
+	 * @param multiPiGreek
+	 *            The proofs of the keys
+	 * @param root
+	 *            The RootMerkleNode information
+	 * @return The value associated to every key, null for the keys that don't
+	 *         belong to the database
+	 * @throws FailedZKSVerifyException
+	 *             If the verify fails
+	 * @throws NoSuchAlgorithmException
+	 *             Hash algorithm not found
+	 */
+	public Map<String, Object> verifier(MultiPiGreek multiPiGreek,
+			RootMerkleNode root) throws FailedZKSVerifyException,
+			NoSuchAlgorithmException {
+
+		logger.info("Verifing " + multiPiGreek.getKeys().size() + " keys - "
+				+ multiPiGreek.size());
+
+		setRoot(root);
+
+		int size = multiPiGreek.size();
+		boolean[] leaf = new boolean[size];
+		for (String key : multiPiGreek.getKeys()) {
+			int k = multiPiGreek.getLeaf(key);
+			if ((k < 0) || (k >= size)) {
+				logger.severe("There is something wrong (leaf)!");
+				throw new FailedZKSVerifyException("The proof is not valid");
+			}
+			leaf[k] = true;
+		}
+
+		// Internal nodes: the message of a node is the hash of its child, all
+		// the evidences referring to the node must agree on it
+		Element[] messages = new Element[size];
+		for (int k = 0; k < size; k++) {
+			SharedEvidence evidence = multiPiGreek.get(k);
+			int parent = evidence.getParent();
+			if ((parent < -1) || (parent >= k) || (parent == -1 && leaf[k])
+					|| (parent >= 0 && (leaf[parent] || multiPiGreek
+							.get(parent).isHard() != evidence.isHard()))) {
+				logger.severe("There is something wrong (path)!");
+				throw new FailedZKSVerifyException("The proof is not valid");
+			}
+			if (parent == -1)
+				continue;
+
+			Element mi = nodeMessage(evidence);
+			if (messages[parent] == null)
+				messages[parent] = mi;
+			else if (!messages[parent].isEqual(mi)) {
+				logger.severe("There is something wrong (shared node)!");
+				throw new FailedZKSVerifyException("The proof is not valid");
+			}
+		}
+
+		// LEAVES
+		boolean[] checked = new boolean[size];
+		LinkedHashMap<String, Object> values = new LinkedHashMap<String, Object>();
+		for (String key : multiPiGreek.getKeys()) {
+			int k = multiPiGreek.getLeaf(key);
+			SharedEvidence evidence = multiPiGreek.get(k);
+			Object value = evidence.isHard() ? multiPiGreek.getValue(key)
+					: null;
+			// the leaves without a value are the same for all their keys
+			if (evidence.isHard() || !checked[k]) {
+				if (!verifyLeaf(evidence, evidence.isHard(), value, root
+						.getPkLeaves())) {
+					logger.severe("There is something wrong (leaf)!");
+					throw new FailedZKSVerifyException("The proof is not valid");
+				}
+				checked[k] = true;
+			}
+			values.put(key, value);
+		}
+
+		ArrayList<VerificationTuple> hardTuples = new ArrayList<VerificationTuple>();
+		ArrayList<VerificationTuple> softTuples = new ArrayList<VerificationTuple>();
+		for (int k = 0; k < size; k++) {
+			if (leaf[k])
+				continue;
+			if (messages[k] == null) {
+				logger.severe("There is something wrong (path)!");
+				throw new FailedZKSVerifyException("The proof is not valid");
+			}
+			SharedEvidence evidence = multiPiGreek.get(k);
+			Element C = evidence.getC();
+			Element V = evidence.getV();
+			// ROOT verifing
+			if (evidence.getParent() == -1) {
+				C = root.getCommitment().getC();
+				V = root.getCommitment().getV();
+			}
+			(evidence.isHard() ? hardTuples : softTuples)
+					.add(new VerificationTuple(C, V, messages[k], evidence
+							.getIndex(), evidence.getOpening()));
+		}
+
+		if ((!hardTuples.isEmpty() && !commitment.qHBatchVer(root.getPk(),
+				hardTuples))
+				|| (!softTuples.isEmpty() && !commitment.qSBatchVer(root
+						.getPk(), softTuples))) {
+			logger.severe("There is something wrong! ");
+			throw new FailedZKSVerifyException("The proof is not valid");
+		}
+
+		logger.info("Verify OK");
+		return values;
+	}
+
+	/**
+	 * Set the root information used to verify the proofs
+	 * 
+	 * @param root
+	 *            The RootMerkleNode information
+	 * @throws NoSuchAlgorithmException
+	 *             Hash algorithm not found
+	 */
+	private void setRoot(RootMerkleNode root) throws NoSuchAlgorithmException {
+		this.commitment = root.getCommInfo().getCommitment();
+		utils = new Utils(root.getHashAlgo(), root.getHashVersion());
+
+		this.commitmentLeaves = root.getCommInfo().getCommitmentLeaves();
 
 		// Re-initialize gp (ElementPowPreProcessing) not saved in xml
 		try {
 			commitmentLeaves.getGp().equals(null);
 		} catch (NullPointerException e) {
-			commitmentLeaves.setGp(commitmentKeysLeaves.get(0).pow());
+			commitmentLeaves.setGp(root.getPkLeaves().get(0).pow());
 		}
 		try {
 			commitment.getGp().equals(null);
 		} catch (NullPointerException e) {
-			commitment.setGp(commitmentKeys.get(0).pow());
+			commitment.setGp(root.getPk().get(0).pow());
 		}
+	}
 
+	/**
+	 * Verify the opening of a leaf
+	 * 
+	 * @param evidence
+	 *            The evidence of the leaf
+	 * @param found
+	 *            true if the key belongs to the database
+	 * @param value
+	 *            The value of the key
+	 * @param commitmentKeysLeaves
+	 *            Commitment keys for leaf nodes
+	 * @return true if the opening is valid
+	 */
+	private boolean verifyLeaf(Evidence evidence, boolean found, Object value,
+			ArrayList<Element> commitmentKeysLeaves) {
 		ArrayList<Element> message = new ArrayList<Element>();
 
 		// TODO
 		message.add(commitmentLeaves.getZr().newZeroElement());
 
-		Evidence evidence = piGreek.remove(0);
-
-		boolean f = false;
-		// LEAF
 		if (found) {
-			byte[] valueHash = utils.makeHashValue(piGreek.getValue());
+			byte[] valueHash = utils.makeHashValue(value);
 			logger.finer("HASH " + new BigInteger(valueHash).abs().toString(2)
 					+ evidence.getC());
 
@@ -112,95 +299,36 @@ public class ZKSVerifier {
 			m.set(new BigInteger(valueHash));
 			message.add(m);
 
-			if (commitmentLeaves.qHVer(commitmentKeysLeaves, message.get(1), 1,
-					evidence.getC(), evidence.getV(), evidence.getOpening()))
-				f = true;
-
-		} else {
-			logger.finer("HASH " + BigInteger.ZERO.toString(2)
-					+ evidence.getC());
-			message.add(commitmentLeaves.getZr().newZeroElement());
-
-			if (commitmentLeaves.qSVer(commitmentKeysLeaves, message.get(1), 1,
-					evidence.getC(), evidence.getV(), evidence.getOpening()[0]))
-				f = true;
-		}
-
-		if (!f) {
-			logger.severe("There is something wrong (leaf)!");
-			throw new FailedZKSVerifyException("The proof is not valid");
+			return commitmentLeaves.qHVer(commitmentKeysLeaves, message.get(1),
+					1, evidence.getC(), evidence.getV(), evidence.getOpening());
 		}
 
-		while (true) {
-
-			MerkleNode child = new MerkleNode();
-			OutputCommit oc = new OutputCommit();
-			oc.setC(evidence.getC());
-			oc.setV(evidence.getV());
-			child.setCommitment(oc);
-
-			evidence = piGreek.remove(0);
-
-			byte[] valueHash = utils.internalNodeHash(child);
-
-			Element mi = commitment.getZr().newElement();
-			mi.set(new BigInteger(valueHash));
-
-			f = false;
-			if (found) {
-				if (commitment
-						.qHVer(commitmentKeys, mi, evidence.getIndex(),
-								evidence.getC(), evidence.getV(), evidence
-										.getOpening()))
-					f = true;
+		logger.finer("HASH " + BigInteger.ZERO.toString(2) + evidence.getC());
+		message.add(commitmentLeaves.getZr().newZeroElement());
 
-			} else {
-				if (commitment.qSVer(commitmentKeys, mi, evidence.getIndex(),
-						evidence.getC(), evidence.getV(),
-						evidence.getOpening()[0]))
-					f = true;
-			}
-			if (!f) {
-				logger.severe("There is something wrong! " + piGreek.size());
-				throw new FailedZKSVerifyException("The proof is not valid");
-			}
-			if (piGreek.size() == 1)
-				break;
-		}
+		return commitmentLeaves.qSVer(commitmentKeysLeaves, message.get(1), 1,
+				evidence.getC(), evidence.getV(), evidence.getOpening()[0]);
+	}
 
-		// ROOT verifing
+	/**
+	 * Get the message that the parent of a node commits for the node: the hash
+	 * of its commitment
+	 * 
+	 * @param evidence
+	 *            The evidence of the node
+	 * @return the message
+	 */
+	private Element nodeMessage(Evidence evidence) {
 		MerkleNode child = new MerkleNode();
 		OutputCommit oc = new OutputCommit();
 		oc.setC(evidence.getC());
 		oc.setV(evidence.getV());
 		child.setCommitment(oc);
 
-		evidence = piGreek.remove(0);
-
 		byte[] valueHash = utils.internalNodeHash(child);
 
 		Element mi = commitment.getZr().newElement();
 		mi.set(new BigInteger(valueHash));
-
-		f = false;
-		if (found) {
-			if (commitment.qHVer(commitmentKeys, mi, evidence.getIndex(), root
-					.getCommitment().getC(), root.getCommitment().getV(),
-					evidence.getOpening()))
-				f = true;
-
-		} else {
-			if (commitment.qSVer(commitmentKeys, mi, evidence.getIndex(), root
-					.getCommitment().getC(), root.getCommitment().getV(),
-					evidence.getOpening()[0]))
-				f = true;
-		}
-		if (!f) {
-			logger.severe(" There is something wrong! ");
-			throw new FailedZKSVerifyException("The proof is not valid");
-		}
-
-		logger.info("Verify OK");
-		return piGreek.getValue();
+		return mi;
 	}
 }
@@ -10,29 +10,35 @@ import it.unisa.dia.gas.plaf.jpbc.field.curve.CurveField;
 import it.unisa.dia.gas.plaf.jpbc.field.generic.GenericElement;
 import it.unisa.dia.gas.plaf.jpbc.field.naive.NaiveElement;
 import it.unisa.dia.gas.plaf.jpbc.field.naive.NaiveField;
+import it.unisa.dia.jzks.merkleTree.ArrayMerkleTree;
 import it.unisa.dia.jzks.merkleTree.ExternalMerkleNode;
 import it.unisa.dia.jzks.merkleTree.InternalMerkleNode;
 import it.unisa.dia.jzks.merkleTree.InvalidExternalMerkleNodeException;
-import it.unisa.dia.jzks.merkleTree.InvalidQParameterException;
+import it.unisa.dia.jzks.merkleTree.KeyPath;
 import it.unisa.dia.jzks.merkleTree.LinkedMerkleTree;
 import it.unisa.dia.jzks.merkleTree.MalformedTreeException;
 import it.unisa.dia.jzks.merkleTree.MerkleNode;
+import it.unisa.dia.jzks.merkleTree.MerkleTree;
 import it.unisa.dia.jzks.merkleTree.RootMerkleNode;
 import it.unisa.dia.jzks.qTMC.Commitment;
 import it.unisa.dia.jzks.qTMC.LibertYung_qTMC;
 import it.unisa.dia.jzks.qTMC.MessageMismatchException;
 import it.unisa.dia.jzks.qTMC.OutputCommit;
 import it.unisa.dia.lasd.position.Position;
-import it.unisa.dia.lasd.tree.TreePosition;
 
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -48,7 +54,7 @@ public class ZeroKnowledgeSet {
 	/**
 	 * Merkle Tree
 	 */
-	private LinkedMerkleTree tree;
+	private MerkleTree tree;
 
 	/**
 	 * Commitment information for internal nodes commitment operations
@@ -87,10 +93,23 @@ public class ZeroKnowledgeSet {
 	private Utils utils;
 
 	/**
-	 * Proofs
+	 * Last proof generated by {@link #belong(String)}
 	 */
 	private PiGreek piGreek;
 
+	/**
+	 * Openings Wi of all the positions of the hard commitments already opened,
+	 * by commitment (the arrays are replaced, never changed, once they are
+	 * stored)
+	 */
+	private Hashtable<OutputCommit, Element[]> openings = new Hashtable<OutputCommit, Element[]>();
+
+	/**
+	 * Keeps the tree commitments and the openings up to date when the
+	 * database changes
+	 */
+	private MerkleTreeCommitter committer;
+
 	/**
 	 * Constructor
 	 * 
@@ -114,7 +133,7 @@ public class ZeroKnowledgeSet {
 	 *            Tree committed
 	 */
 	public ZeroKnowledgeSet(Hashtable<String, Object> database,
-			LinkedMerkleTree tree) {
+			MerkleTree tree) {
 
 		RootMerkleNode root = ((RootMerkleNode) tree.root().element());
 
@@ -133,11 +152,117 @@ public class ZeroKnowledgeSet {
 		this.commitment.setGp(this.commitmentKeys.get(0).pow());
 
 		try {
-			utils = new Utils(root.getHashAlgo());
+			utils = new Utils(root.getHashAlgo(), root.getHashVersion());
 		} catch (NoSuchAlgorithmException e) {
 			logger.severe("Hash algorithm not valid");
 		}
 
+		committer = new MerkleTreeCommitter(tree, commitment, commitmentKeys,
+				commitmentLeaves, commitmentKeysLeaves, utils, utils
+						.getNewRandomGenerator(Utils.PR_ALGO));
+		committer.setOpenings(openings);
+
+	}
+
+	/**
+	 * Insert a new key into the database and into the committed tree: only the
+	 * nodes on the key path are committed and the stored openings of the
+	 * ancestors are updated
+	 * 
+	 * @param key
+	 *            The new key
+	 * @param value
+	 *            The value of the key
+	 * @return true if it's all right, false if some errors occurred
+	 */
+	public boolean insert(String key, Object value) {
+		try {
+			committer.insert(key, value);
+		} catch (InvalidExternalMerkleNodeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the node is not a valid ExternalMerkleNode");
+			return false;
+		} catch (MalformedTreeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the tree is malformed");
+			return false;
+		}
+		database.put(key, value);
+		return true;
+	}
+
+	/**
+	 * Replace the value of a key in the database and in the tree: the leaf and
+	 * its ancestors (and their stored openings) are updated in place, one
+	 * exponentiation per level
+	 * 
+	 * @param key
+	 *            The key to update
+	 * @param value
+	 *            The new value of the key
+	 * @return true if it's all right, false if the key is not in the tree
+	 */
+	public boolean update(String key, Object value) {
+		if (committer.update(key, value) == null) {
+			logger.warning("Key not found: " + key);
+			return false;
+		}
+		database.put(key, value);
+		return true;
+	}
+
+	/**
+	 * Remove a key from the database and from the tree: its leaf becomes an
+	 * empty leaf and the ancestors (and their stored openings) are updated in
+	 * place, one exponentiation per level
+	 * 
+	 * @param key
+	 *            The key to remove
+	 * @return true if it's all right, false if the key is not in the tree
+	 */
+	public boolean delete(String key) {
+		if (committer.delete(key) == null) {
+			logger.warning("Key not found: " + key);
+			return false;
+		}
+		database.remove(key);
+		return true;
+	}
+
+	/**
+	 * Apply many changes to the database and to the tree at once: the changed leaves are updated first,
+	 * then every node on the changed paths is recommitted exactly once, from
+	 * the deepest level up to the root
+	 * 
+	 * @param changes
+	 *            The new value of every changed key (inserted if the key is
+	 *            not in the tree, updated otherwise); a null value removes the
+	 *            key
+	 * @return true if it's all right, false if some errors occurred
+	 */
+	public boolean apply(Map<String, Object> changes) {
+		try {
+			committer.apply(changes);
+		} catch (InvalidExternalMerkleNodeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the node is not a valid ExternalMerkleNode");
+			return false;
+		} catch (MalformedTreeException e) {
+			logger
+					.severe("Error inserting a new leaf into the tree: the tree is malformed");
+			return false;
+		} finally {
+			Iterator<Map.Entry<String, Object>> it = changes.entrySet()
+					.iterator();
+			while (it.hasNext()) {
+				Map.Entry<String, Object> change = it.next();
+				if (change.getValue() == null)
+					database.remove(change.getKey());
+				else if (committer.contains(change.getKey()))
+					database.put(change.getKey(), change.getValue());
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -154,10 +279,14 @@ public class ZeroKnowledgeSet {
 	 * 
 	 * @param leaf
 	 *            The position of the leaf into the Merkle tree
+	 * @param cache
+	 *            Openings shared with the other proofs of a batch (null for a
+	 *            single proof)
 	 * @return ArrayList of hard openings for commitments in nodes on the path
 	 *         connecting leaf x to the root
 	 */
-	private PiGreek proofMembership(Position<MerkleNode> leaf) {
+	private PiGreek proofMembership(Position<MerkleNode> leaf,
+			ProofCache cache) {
 		ExternalMerkleNode node = (ExternalMerkleNode) leaf.element();
 		String key = node.getKey();
 
@@ -200,24 +329,33 @@ public class ZeroKnowledgeSet {
 			} catch (NullPointerException e) {
 				break;
 			}
-			int i = childNodePos.element().getIndex();
+			MerkleNode childNode = childNodePos.element();
+			Evidence evidence = (cache == null) ? null : cache.getEvidence(
+					childNode, true);
+			if (evidence == null) {
+				int i = childNode.getIndex();
 
-			valueHash = utils.internalNodeHash(childNodePos.element());
-			pk = commitmentKeys;
+				valueHash = utils.internalNodeHash(childNode);
 
-			Element mi = commitment.getZr().newElement();
-			mi.set(new BigInteger(valueHash));
+				Element mi = commitment.getZr().newElement();
+				mi.set(new BigInteger(valueHash));
 
-			try {
-				opening = commitment.qHOpen(pk, mi, i, parentNode
-						.getCommitment().getAux());
-			} catch (MessageMismatchException e1) {
-				logger
-						.severe("The message in commitment informations and the message in the node mismatch");
-				return null;
+				try {
+					ArrayList<Element> aux = parentNode.getCommitment()
+							.getAux();
+					opening[0] = aux.get(aux.size() - 1);
+					opening[1] = getOpening(parentNode, mi, i);
+				} catch (MessageMismatchException e1) {
+					logger
+							.severe("The message in commitment informations and the message in the node mismatch");
+					return null;
+				}
+				evidence = new Evidence(parentNode.getCommitment().getC(),
+						parentNode.getCommitment().getV(), opening, i);
+				if (cache != null)
+					cache.putEvidence(childNode, true, evidence);
 			}
-			piGreek.add(new Evidence(parentNode.getCommitment().getC(),
-					parentNode.getCommitment().getV(), opening, i));
+			piGreek.add(evidence);
 
 			childNodePos = parentNodePos;
 			parentNodePos = tree.parent(childNodePos);
@@ -225,6 +363,64 @@ public class ZeroKnowledgeSet {
 		return piGreek;
 	}
 
+	/**
+	 * Get the opening Wi of a hard commitment. Openings are stored by node: the
+	 * first one is computed alone, when a second position of the same node is
+	 * opened all its positions are opened at once (the node is on many proof
+	 * paths), so the next proofs passing through the node only read them
+	 * 
+	 * @param node
+	 *            Internal node with a hard commitment
+	 * @param mi
+	 *            The message to open
+	 * @param i
+	 *            Index of the message
+	 * @return The opening Wi of mi
+	 * @throws MessageMismatchException
+	 *             if mi is not the message committed at index i
+	 */
+	private Element getOpening(InternalMerkleNode node, Element mi, int i)
+			throws MessageMismatchException {
+		OutputCommit outputCommit = node.getCommitment();
+		ArrayList<Element> aux = outputCommit.getAux();
+		if (!aux.get(i).isEqual(mi))
+			throw new MessageMismatchException(
+					"The message in mi parameter is not the same of aux[i]");
+
+		Element[] W = openings.get(outputCommit);
+		if ((W == null) || (W[i - 1] == null))
+			// the provers opening the same node wait for the first one
+			synchronized (outputCommit) {
+				W = openings.get(outputCommit);
+				if (W == null) {
+					W = new Element[tree.getQ()];
+					W[i - 1] = commitment.qSOpen(commitmentKeys, mi, i,
+							LibertYung_qTMC.HARD_COMMITMENT, aux);
+					openings.put(outputCommit, W);
+				} else if (W[i - 1] == null) {
+					W = commitment.qHOpenAll(commitmentKeys, aux);
+					openings.put(outputCommit, W);
+				}
+			}
+		return W[i - 1].duplicate();
+	}
+
+	/**
+	 * Open all the positions of all the hard commitments of the tree in
+	 * advance, so that proofs are made of stored openings
+	 */
+	public void precomputeOpenings() {
+		Iterator<Position<MerkleNode>> nodeIter = tree.postOrderInternal();
+		while (nodeIter.hasNext()) {
+			InternalMerkleNode node = (InternalMerkleNode) nodeIter.next()
+					.element();
+			OutputCommit outputCommit = node.getCommitment();
+			if (node.getFlag() == LibertYung_qTMC.HARD_COMMITMENT)
+				openings.put(outputCommit, commitment.qHOpenAll(
+						commitmentKeys, outputCommit.getAux()));
+		}
+	}
+
 	/**
 	 * Checks if the key belong to database, generates the evidences needed to
 	 * prove that and set the evidence ArrayList
@@ -234,37 +430,142 @@ public class ZeroKnowledgeSet {
 	 * @return true if key belongs to database, false otherwise
 	 */
 	public boolean belong(String key) {
-		byte[] keyHash = utils.makeHashValue(key);
-		String path = new BigInteger(keyHash).abs().toString(2);
-		logger.fine("PATH: " + path);
+		piGreek = prove(key);
+		return (piGreek != null) && piGreek.isFound();
+	}
 
-		int cursor = 0;
-		Position<MerkleNode> parent = tree.root();
-		int log = ((Double) (Math.log(tree.getQ()) / Math.log(2))).intValue();
-		StringBuffer localKey = new StringBuffer();
-		localKey.append(MerkleNode.ROOT_PATH);
-		while ((cursor + log) <= path.length()) {
-			localKey.append(path.substring(cursor, cursor + log));
-			Position<MerkleNode> child = tree.findChild(parent, localKey
-					.toString());
-			if (child == null) {
-				piGreek = proofNoMembership(parent, key, cursor);
-				return false;
+	/**
+	 * Generate the proof that the key belongs or does not belong to the
+	 * database. The proof is returned and nothing is stored but the openings
+	 * of the hard commitments, so many threads can prove keys of the same set
+	 * at once (as long as the tree does not change)
+	 * 
+	 * @param key
+	 *            Key to check
+	 * @return the proof of membership or of non membership, null if some
+	 *         errors occurred
+	 */
+	public PiGreek prove(String key) {
+		ArrayList<Position<MerkleNode>> nodes = new ArrayList<Position<MerkleNode>>();
+		nodes.add(tree.root());
+		return prove(key, tree.keyPath(utils.makeHashValue(key)), nodes, null);
+	}
+
+	/**
+	 * Generate the proofs of many keys at once. The keys are sorted by path,
+	 * so each key walks down the tree from the deepest node it shares with the
+	 * previous one, and the opening of a node for a child is computed once
+	 * for all the proofs passing through that child (as the nodes derived
+	 * from the seeds under a frontier)
+	 * 
+	 * @param keys
+	 *            Keys to check
+	 * @return the proof of every key, in the order of the keys (null for the
+	 *         keys whose proof could not be generated)
+	 */
+	public Map<String, PiGreek> proveAll(Collection<String> keys) {
+		final HashMap<String, KeyPath> paths = new HashMap<String, KeyPath>();
+		for (String key : keys)
+			if (!paths.containsKey(key))
+				paths.put(key, tree.keyPath(utils.makeHashValue(key)));
+		ArrayList<String> sorted = new ArrayList<String>(paths.keySet());
+		Collections.sort(sorted, new Comparator<String>() {
+			public int compare(String key1, String key2) {
+				return paths.get(key1).compareTo(paths.get(key2));
 			}
+		});
+
+		HashMap<String, PiGreek> proofs = new HashMap<String, PiGreek>();
+		ProofCache cache = new ProofCache();
+		ArrayList<Position<MerkleNode>> nodes = new ArrayList<Position<MerkleNode>>();
+		nodes.add(tree.root());
+		KeyPath previous = null;
+		int log = tree.getBitNode();
+		for (String key : sorted) {
+			KeyPath path = paths.get(key);
+			// levels shared with the previous key
+			int shared = 0;
+			if (previous != null)
+				while ((shared < nodes.size() - 1)
+						&& ((shared + 1) * log <= path.length())
+						&& ((shared + 1) * log <= previous.length())
+						&& (path.chunk(shared * log, log) == previous.chunk(
+								shared * log, log)))
+					shared++;
+			while (nodes.size() > shared + 1)
+				nodes.remove(nodes.size() - 1);
+
+			proofs.put(key, prove(key, path, nodes, cache));
+			previous = path;
+		}
+
+		LinkedHashMap<String, PiGreek> ordered = new LinkedHashMap<String, PiGreek>();
+		for (String key : keys)
+			ordered.put(key, proofs.get(key));
+		return ordered;
+	}
+
+	/**
+	 * Generate the proofs of many keys at once (see
+	 * {@link #proveAll(Collection)}) in a single object, where the evidences of
+	 * the nodes shared by the key paths are stored once
+	 * 
+	 * @param keys
+	 *            Keys to check
+	 * @return the proofs of the keys, null if some errors occurred
+	 */
+	public MultiPiGreek proveMulti(Collection<String> keys) {
+		MultiPiGreek multiPiGreek = new MultiPiGreek();
+		for (Map.Entry<String, PiGreek> proof : proveAll(keys).entrySet()) {
+			if (proof.getValue() == null)
+				return null;
+			multiPiGreek.addProof(proof.getValue());
+		}
+		return multiPiGreek;
+	}
+
+	/**
+	 * Generate the proof of a key going on from the nodes already found on its
+	 * path
+	 * 
+	 * @param key
+	 *            Key to check
+	 * @param path
+	 *            Key path
+	 * @param nodes
+	 *            Nodes on the key path from the root: the walk starts from the
+	 *            last one, and the nodes found are added to the list
+	 * @param cache
+	 *            Openings shared with the other proofs of a batch (null for a
+	 *            single proof)
+	 * @return the proof of membership or of non membership, null if some
+	 *         errors occurred
+	 */
+	private PiGreek prove(String key, KeyPath path,
+			ArrayList<Position<MerkleNode>> nodes, ProofCache cache) {
+		if (logger.isLoggable(Level.FINE))
+			logger.fine("PATH: " + path);
+
+		int log = tree.getBitNode();
+		int cursor = (nodes.size() - 1) * log;
+		Position<MerkleNode> parent = nodes.get(nodes.size() - 1);
+		while ((cursor + log) <= path.length()) {
+			Position<MerkleNode> child = tree.findChild(parent, path.index(
+					cursor, log));
+			if (child == null)
+				return proofNoMembership(parent, key, path, cursor, cache);
+			nodes.add(child);
 			parent = child;
 			cursor += log;
 		}
 		if (((ExternalMerkleNode) parent.element()).getKey().equals(
-				MerkleNode.EMPTY_KEY)) {
-			piGreek = proofNoMembership(parent, key, cursor);
-			return false;
-		}
+				MerkleNode.EMPTY_KEY))
+			return proofNoMembership(parent, key, path, cursor, cache);
 
-		logger.info("Leaf found: " + parent.element().getPath());
-
-		piGreek = proofMembership(parent);
-		return true;
+		if (logger.isLoggable(Level.INFO))
+			logger.info("Leaf found: " + parent.element().getNodePath());
 
+		return proofMembership(parent, cache);
 	}
 
 	/**
@@ -281,15 +582,16 @@ public class ZeroKnowledgeSet {
 		piGreek = new PiGreek();
 		int cursor = 0;
 		Position<MerkleNode> parent = tree.root();
+		KeyPath keyPath = KeyPath.fromBinaryString(path);
 
-		int log = ((Double) (Math.log(tree.getQ()) / Math.log(2))).intValue();
-		String localKey = MerkleNode.ROOT_PATH;
-		while ((cursor + log) <= path.length()) {
-			localKey = localKey + path.substring(cursor, cursor + log);
-			Position<MerkleNode> child = tree.findChild(parent, localKey);
+		int log = tree.getBitNode();
+		while ((cursor + log) <= keyPath.length()) {
+			Position<MerkleNode> child = tree.findChild(parent, keyPath.index(
+					cursor, log));
 			if (child == null) {
 				System.out.println("Frontier: " + parent.element().getPath());
-				piGreek = proofNoMembership(parent, key, path, cursor);
+				piGreek = proofNoMembership(parent, key, keyPath, cursor,
+						null);
 				return false;
 			}
 			parent = child;
@@ -298,124 +600,16 @@ public class ZeroKnowledgeSet {
 		System.out.println(parent.element().getPath());
 		if (((ExternalMerkleNode) parent.element()).getKey().equals(
 				MerkleNode.EMPTY_KEY)) {
-			piGreek = proofNoMembership(parent, key, cursor);
+			piGreek = proofNoMembership(parent, key, keyPath, cursor, null);
 			return false;
 		}
 
 		logger.info("Leaf found: " + parent.element().getPath());
 
-		piGreek = proofMembership(parent);
+		piGreek = proofMembership(parent, null);
 		return true;
 	}
 
-	/**
-	 * Create a new tree, the subTree to generate proofs about elements not
-	 * belonging
-	 * 
-	 * @param frontier
-	 *            Tree frontier node
-	 * @return New subtree
-	 */
-	private LinkedMerkleTree genSubTree(InternalMerkleNode frontier) {
-		LinkedMerkleTree subTree = new LinkedMerkleTree();
-		subTree.setLambda(tree.getLambda());
-		try {
-			subTree.setQ(tree.getQ());
-		} catch (InvalidQParameterException e1) {
-			logger.log(Level.SEVERE, "Exception caught", e1);
-			return null;
-		}
-
-		logger.fine("SubTree Root: " + frontier.getPath());
-
-		InternalMerkleNode newRoot = new InternalMerkleNode();
-		newRoot.setCommitment(frontier.getCommitment());
-		newRoot.setIndex(frontier.getIndex());
-		newRoot.setPath(MerkleNode.ROOT_PATH);
-		newRoot.setFlag(LibertYung_qTMC.SOFT_COMMITMENT);
-		subTree.replace(subTree.root(), newRoot);
-		return subTree;
-	}
-
-	/**
-	 * Generate random numbers to make correct proofs about elements not
-	 * belonging
-	 * 
-	 * @param indexes
-	 *            Subtree nodes indexes in the path
-	 * @param seed
-	 *            Pseudorandom generator seed
-	 * @return Random numbers ArrayList
-	 */
-	private ArrayList<BigInteger> getRandoms(ArrayList<Integer> indexes,
-			byte[] seed) {
-
-		// random generating
-		SecureRandom random = utils.getNewRandomGenerator(Utils.PR_ALGO);
-		random.setSeed(seed);
-
-		// array list dei random da utilizzare per il commit dei nodi del
-		// sottoalbero
-		ArrayList<BigInteger> randoms = new ArrayList<BigInteger>();
-
-		// random numbers about leaves
-		for (int i = 0; i < tree.getQ(); i++) {
-			randoms.add(0, BigInteger
-					.valueOf(random.nextInt(Integer.MAX_VALUE)));
-			randoms.add(0, BigInteger
-					.valueOf(random.nextInt(Integer.MAX_VALUE)));
-		}
-
-		// random numbers about internal nodes
-		while (!indexes.isEmpty()) {
-			int i = indexes.remove(0);
-			int j = 1;
-			for (j = 1; j < i; j++) {
-				random.nextInt(Integer.MAX_VALUE);
-			}
-			randoms.add(0, BigInteger
-					.valueOf(random.nextInt(Integer.MAX_VALUE)));
-			randoms.add(0, BigInteger
-					.valueOf(random.nextInt(Integer.MAX_VALUE)));
-			byte[] newSeed = new byte[16];
-			random.nextBytes(newSeed);
-			for (j = j + 1; j <= tree.getQ(); j++) {
-				random.nextInt(Integer.MAX_VALUE);
-				random.nextInt(Integer.MAX_VALUE);
-			}
-			random.setSeed(newSeed);
-		}
-
-		return randoms;
-	}
-
-	/**
-	 * To provide evidence that some key x does not belong to the database, the
-	 * prover first generates the missing portion of the subtree where x lies.
-	 * Then, it reveals soft openings for all (hard or soft) commitments
-	 * contained in nodes appearing in the path from x to the root
-	 * 
-	 * @param parent
-	 *            Last node in the tree that belongs to the path between the
-	 *            root and the node (not into the tree) containing the key
-	 * @param key
-	 *            Key doesn't belong to database
-	 * @param cursor
-	 *            Index in the string path
-	 * @return ArrayList of soft openings for commitments in nodes on the path
-	 *         connecting leaf x to the root
-	 */
-	private PiGreek proofNoMembership(Position<MerkleNode> parent, String key,
-			int cursor) {
-
-		byte[] keyHash = utils.makeHashValue(key);
-		String path = new BigInteger(keyHash).abs().toString(2);
-
-		logger.info("Proof NO " + key + "=>" + path);
-
-		return proofNoMembership(parent, key, path, cursor);
-	}
-
 	/**
 	 * To provide evidence that some key x does not belong to the database, the
 	 * prover first generates the missing portion of the subtree where x lies.
@@ -428,22 +622,24 @@ public class ZeroKnowledgeSet {
 	 * @param key
 	 *            Key doesn't belong to database
 	 * @param path
-	 *            Node path
+	 *            Key path
 	 * @param cursor
-	 *            Index in the string path
+	 *            Index in the key path
+	 * @param cache
+	 *            Openings shared with the other proofs of a batch (null for a
+	 *            single proof)
 	 * @return ArrayList of soft openings for commitments in nodes on the path
 	 *         connecting leaf x to the root
 	 */
 	private PiGreek proofNoMembership(Position<MerkleNode> parent, String key,
-			String path, int cursor) {
+			KeyPath path, int cursor, ProofCache cache) {
+
+		logger.info("Proof NO " + key);
 
 		PiGreek piGreek = new PiGreek();
 		piGreek.setFound(false);
 		piGreek.setKey(key);
 
-		LinkedMerkleTree subTree = null;
-		Position<MerkleNode> parentNodePos;
-		Position<MerkleNode> childNodePos;
 		Element opening[];
 
 		ArrayList<Element> message = new ArrayList<Element>();
@@ -451,223 +647,166 @@ public class ZeroKnowledgeSet {
 		message.add(commitmentLeaves.getZr().newZeroElement());
 		message.add(commitmentLeaves.getZr().newZeroElement());
 
-		// if we need to build the subtree
-		if (cursor < path.length()) {
-			logger.info("we need subtree");
-			InternalMerkleNode frontier = (InternalMerkleNode) parent.element();
-			subTree = genSubTree(frontier);
-
-			// add leaves to subtree
-			ExternalMerkleNode node = new ExternalMerkleNode();
-
-			Position<MerkleNode> newLeaf = null;
-
-			try {
-				newLeaf = subTree.insert(node, path, cursor);
-			} catch (InvalidExternalMerkleNodeException e) {
-				logger
-						.severe("Error inserting a new leaf into the tree: the node is not a valid ExternalMerkleNode");
-				return null;
-			} catch (MalformedTreeException e) {
-				logger
-						.severe("Error inserting a new leaf into the tree: the tree is malformed");
+		// the missing portion of the path, from the frontier to the leaf: its
+		// nodes are derived from the seeds and they are not added to the tree
+		ArrayList<MerkleNode> subPath = new ArrayList<MerkleNode>();
+		MerkleNode current = parent.element();
+		int bitNode = tree.getBitNode();
+		while (current instanceof InternalMerkleNode) {
+			boolean leaf;
+			if (subPath.isEmpty() && tree.numberOfChildren(parent) > 0)
+				leaf = tree.hasLeaves(parent);
+			else
+				leaf = (cursor + bitNode + bitNode) > path.length();
+			if (!leaf && (cursor + bitNode + bitNode) > path.length()) {
+				logger.severe("The key path ends on an internal node");
 				return null;
 			}
 
-			// array list degli indici dei nodi creati (primo elemento: leaf
-			// index,
-			// ultimo: root child index)
-			ArrayList<Integer> indexes = new ArrayList<Integer>();
-			Iterator<Position<MerkleNode>> subTreeIter = subTree
-					.postOrderInternal();
-			while (subTreeIter.hasNext())
-				indexes.add(0, subTreeIter.next().element().getIndex());
-
-			// randoms
-			ArrayList<BigInteger> randoms = getRandoms(indexes, frontier
-					.getSeed());
-
-			// New leaves commitment
-			logger.fine("Commit " + node.getIndex() + " - " + node.getPath());
-
-			OutputCommit newLeafOutputCommit = null;
-
-			parentNodePos = subTree.parent(newLeaf);
-			Iterator<Position<MerkleNode>> newLeavesIter = subTree.children(
-					parentNodePos).iterator();
-			while (newLeavesIter.hasNext()) {
-				Position<MerkleNode> current = newLeavesIter.next();
-				ExternalMerkleNode currentNode = (ExternalMerkleNode) current
-						.element();
-
-				OutputCommit outputCommit = commitmentLeaves.qHComPr(
-						commitmentKeysLeaves, message, randoms.remove(0),
-						randoms.remove(0));
-
-				currentNode.setCommitment(outputCommit);
-
-				if (current.equals(newLeaf)) {
-					newLeafOutputCommit = currentNode.getCommitment();
-					currentNode.setKey(key);
-				}
-
-				subTree.replace(current, currentNode);
-			}
-
-			// Leaf opening
-			opening = new Element[1];
-
-			logger.fine("Leaf Opening " + node.getPath());
-
-			opening[0] = commitmentLeaves.qSOpen(commitmentKeysLeaves, message
-					.get(1), 1, LibertYung_qTMC.HARD_COMMITMENT,
-					newLeafOutputCommit.getAux());
-
-			piGreek.add(new Evidence(newLeafOutputCommit.getC(),
-					newLeafOutputCommit.getV(), opening, 1, node.getPath()));
-
-			// SubTree commitment
-			Iterator<Position<MerkleNode>> nodeIter = subTree
-					.postOrderInternal();
-			ArrayList<Element> messages = new ArrayList<Element>();
-			while (nodeIter.hasNext()) {
-				TreePosition<MerkleNode> nodePos = (TreePosition<MerkleNode>) nodeIter
-						.next();
-
-				if (subTree.isRoot(nodePos))
-					break;
-
-				logger.fine("Commit " + nodePos.element().getIndex() + " - "
-						+ nodePos.element().getPath());
-				InternalMerkleNode nodeEl = (InternalMerkleNode) nodePos
-						.element();
-				OutputCommit outputCommit = null;
-
-				if (subTree.numberOfChildren(nodePos) > 0) {
-
-					messages.clear();
-					// TODO
-					messages.add(commitment.getZr().newZeroElement());
-					for (int i = 1; i <= tree.getQ(); i++)
-						messages.add(commitment.getZr().newZeroElement());
-
-					Iterator<Position<MerkleNode>> iterChild = nodePos
-							.getChildren().iterator();
-					while (iterChild.hasNext()) {
-						Position<MerkleNode> current = iterChild.next();
-
-						byte[] valueHash = utils.internalNodeHash(current
-								.element());
-						Element m = commitment.getZr().newElement();
-						m.set(new BigInteger(valueHash));
-						messages.set(current.element().getIndex(), m);
-					}
-
-					outputCommit = commitment.qHComPr(commitmentKeys, messages,
-							randoms.remove(0), randoms.remove(0));
-					nodeEl.setFlag(LibertYung_qTMC.HARD_COMMITMENT);
-
-				} else {
-					outputCommit = commitment.qSComPr(commitmentKeys, randoms
-							.remove(0), randoms.remove(0));
-					nodeEl.setFlag(LibertYung_qTMC.SOFT_COMMITMENT);
-				}
-
-				nodeEl.setCommitment(outputCommit);
-
-				subTree.replace(nodePos, nodeEl);
+			int index = path.index(cursor, bitNode);
+			MerkleNode child = null;
+			if (cache != null)
+				child = cache.getVirtualNode(current.getNodePath().child(index,
+						bitNode));
+			if (child == null) {
+				child = committer.virtualChild((InternalMerkleNode) current,
+						index, leaf);
+				if (cache != null)
+					cache.putVirtualNode(child);
 			}
+			current = child;
+			subPath.add(0, current);
+			cursor += bitNode;
+		}
+		if (!subPath.isEmpty())
+			logger.info("we need subtree");
 
-			// SubTree opening
-			childNodePos = newLeaf;
-			while (true) {
-				opening = new Element[1];
-
-				InternalMerkleNode parentNode = null;
-				try {
-					parentNode = (InternalMerkleNode) parentNodePos.element();
-				} catch (NullPointerException e) {
-					break;
-				}
-				int index = childNodePos.element().getIndex();
-
-				InternalMerkleNode nodeIn = (InternalMerkleNode) parentNode;
-
-				byte[] valueHash = utils.internalNodeHash(childNodePos
-						.element());
-				logger.finer("HASH "
-						+ new BigInteger(valueHash).abs().toString(2));
-
-				Element mi = commitment.getZr().newElement();
-				mi.set(new BigInteger(valueHash));
-
-				logger.fine("SubTree Opening " + nodeIn.getPath() + "=>" + "("
-						+ index + ")" + mi + " - " + nodeIn.getFlag());
-
-				opening[0] = commitment.qSOpen(commitmentKeys, mi, index,
-						nodeIn.getFlag(), nodeIn.getCommitment().getAux());
+		// Leaf opening
+		opening = new Element[1];
 
-				piGreek.add(new Evidence(nodeIn.getCommitment().getC(), nodeIn
-						.getCommitment().getV(), opening, index, nodeIn
-						.getPath()));
+		if (logger.isLoggable(Level.FINE))
+			logger.fine("Leaf Opening " + current.getNodePath());
 
-				childNodePos = parentNodePos;
-				parentNodePos = subTree.parent(childNodePos);
-			}
-		} else {
-			// Leaf opening
-			opening = new Element[1];
+		opening[0] = commitmentLeaves.qSOpen(commitmentKeysLeaves, message
+				.get(1), 1, LibertYung_qTMC.HARD_COMMITMENT, current
+				.getCommitment().getAux());
 
-			logger.fine("Leaf Opening " + parent.element().getPath());
-
-			opening[0] = commitmentLeaves.qSOpen(commitmentKeysLeaves, message
-					.get(1), 1, LibertYung_qTMC.SOFT_COMMITMENT, parent
-					.element().getCommitment().getAux());
+		piGreek.add(new Evidence(current.getCommitment().getC(), current
+				.getCommitment().getV(), opening, 1));
 
-			piGreek.add(new Evidence(parent.element().getCommitment().getC(),
-					parent.element().getCommitment().getV(), opening, 1, parent
-							.element().getPath()));
+		// SubTree opening
+		for (int k = 1; k < subPath.size(); k++) {
+			MerkleNode childNode = subPath.get(k - 1);
+			InternalMerkleNode nodeIn = (InternalMerkleNode) subPath.get(k);
+			piGreek.add(softOpening(nodeIn, childNode, cache));
 		}
 
 		// Tree open
-		parentNodePos = tree.parent(parent);
-		childNodePos = parent;
+		Position<MerkleNode> parentNodePos;
+		MerkleNode childNode;
+		if (subPath.isEmpty()) {
+			parentNodePos = tree.parent(parent);
+			childNode = parent.element();
+		} else {
+			parentNodePos = parent;
+			childNode = subPath.get(subPath.size() - 1);
+		}
 		while (true) {
-			opening = new Element[1];
-
 			InternalMerkleNode parentNode = null;
 			try {
 				parentNode = (InternalMerkleNode) parentNodePos.element();
 			} catch (NullPointerException e) {
 				break;
 			}
-			int i = childNodePos.element().getIndex();
 
-			byte[] valueHash = utils.internalNodeHash(childNodePos.element());
-			logger.finer("HASH " + new BigInteger(valueHash).abs().toString(2)
-					+ childNodePos.element().getCommitment().getC());
+			Evidence evidence = (cache == null) ? null : cache.getEvidence(
+					childNode, false);
+			if (evidence != null)
+				piGreek.add(evidence);
+			// a soft frontier has no stored openings
+			else if (parentNode.getFlag() == LibertYung_qTMC.SOFT_COMMITMENT)
+				piGreek.add(softOpening(parentNode, childNode, cache));
+			else {
+				opening = new Element[1];
 
-			Element mi = commitment.getZr().newElement();
-			mi.set(new BigInteger(valueHash));
+				int i = childNode.getIndex();
 
-			logger.fine("Tree Opening " + parentNode.getPath() + "=>" + "(" + i
-					+ ")" + mi);
+				byte[] valueHash = utils.internalNodeHash(childNode);
+				if (logger.isLoggable(Level.FINER))
+					logger.finer("HASH "
+							+ new BigInteger(valueHash).abs().toString(2)
+							+ childNode.getCommitment().getC());
 
-			opening[0] = commitment.qSOpen(commitmentKeys, mi, i,
-					LibertYung_qTMC.HARD_COMMITMENT, parentNode.getCommitment()
-							.getAux());
+				Element mi = commitment.getZr().newElement();
+				mi.set(new BigInteger(valueHash));
 
-			piGreek.add(new Evidence(parentNode.getCommitment().getC(),
-					parentNode.getCommitment().getV(), opening, i, parentNode
-							.getPath()));
+				if (logger.isLoggable(Level.FINE))
+					logger.fine("Tree Opening " + parentNode.getNodePath()
+							+ "=>" + "(" + i + ")" + mi);
 
-			childNodePos = parentNodePos;
-			parentNodePos = tree.parent(childNodePos);
+				try {
+					opening[0] = getOpening(parentNode, mi, i);
+				} catch (MessageMismatchException e) {
+					opening[0] = LibertYung_qTMC.PERPENDICULAR;
+				}
+
+				evidence = new Evidence(parentNode.getCommitment().getC(),
+						parentNode.getCommitment().getV(), opening, i);
+				if (cache != null)
+					cache.putEvidence(childNode, false, evidence);
+				piGreek.add(evidence);
+			}
+
+			childNode = parentNode;
+			parentNodePos = tree.parent(parentNodePos);
 		}
 
 		return piGreek;
 	}
 
+	/**
+	 * Soft opening of a soft commitment to the hash of a child
+	 * 
+	 * @param nodeIn
+	 *            Internal node with a soft commitment
+	 * @param childNode
+	 *            The child to open
+	 * @param cache
+	 *            Openings shared with the other proofs of a batch (null for a
+	 *            single proof)
+	 * @return the evidence of the opening
+	 */
+	private Evidence softOpening(InternalMerkleNode nodeIn,
+			MerkleNode childNode, ProofCache cache) {
+		Evidence evidence = (cache == null) ? null : cache.getEvidence(
+				childNode, false);
+		if (evidence != null)
+			return evidence;
+
+		Element opening[] = new Element[1];
+		int index = childNode.getIndex();
+
+		byte[] valueHash = utils.internalNodeHash(childNode);
+		if (logger.isLoggable(Level.FINER))
+			logger.finer("HASH " + new BigInteger(valueHash).abs().toString(2));
+
+		Element mi = commitment.getZr().newElement();
+		mi.set(new BigInteger(valueHash));
+
+		if (logger.isLoggable(Level.FINE))
+			logger.fine("SubTree Opening " + nodeIn.getNodePath() + "=>" + "("
+					+ index + ")" + mi + " - " + nodeIn.getFlag());
+
+		opening[0] = commitment.qSOpen(commitmentKeys, mi, index, nodeIn
+				.getFlag(), nodeIn.getCommitment().getAux());
+
+		evidence = new Evidence(nodeIn.getCommitment().getC(), nodeIn
+				.getCommitment().getV(), opening, index);
+		if (cache != null)
+			cache.putEvidence(childNode, false, evidence);
+		return evidence;
+	}
+
 	/**
 	 * Get the ArrayList of evidences needed by verifier
 	 * 
@@ -691,12 +830,12 @@ public class ZeroKnowledgeSet {
 	 * @param path
 	 *            The path where the data are stored
 	 */
-	public static LinkedMerkleTree readMerkleTreeFromXML(String path) {
+	public static MerkleTree readMerkleTreeFromXML(String path) {
 		XStream xstream = getXStreamMerkleTree();
 		try {
 			XppReader xmlReader = new XppReader(new FileReader(path));
 
-			return (LinkedMerkleTree) xstream.unmarshal(xmlReader);
+			return (MerkleTree) xstream.unmarshal(xmlReader);
 
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
@@ -714,6 +853,7 @@ public class ZeroKnowledgeSet {
 		XStream xstream = new XStream(new DomDriver());
 
 		xstream.processAnnotations(LinkedMerkleTree.class);
+		xstream.processAnnotations(ArrayMerkleTree.class);
 
 		xstream.setMode(XStream.XPATH_ABSOLUTE_REFERENCES);
 
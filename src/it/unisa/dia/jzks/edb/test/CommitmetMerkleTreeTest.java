@@ -1,246 +1,1106 @@
-/**
- * @author Costante Luca (dott.costante@gmail.com)
- * @author Giardino Daniele (dagix5@gmail.com)
- */
-package it.unisa.dia.jzks.edb.test;
-
-import it.unisa.dia.gas.plaf.jpbc.pairing.CurveParams;
-import it.unisa.dia.jzks.edb.CommitmentInformations;
-import it.unisa.dia.jzks.edb.CommitmentMerkleTree;
-import it.unisa.dia.jzks.edb.InvalidECParameterException;
-import it.unisa.dia.jzks.edb.ParameterValueMismatchException;
-import it.unisa.dia.jzks.edb.SecurityParameterNotSatisfiedException;
-import it.unisa.dia.jzks.edb.TypeACurveGeneratorSafe;
-import it.unisa.dia.jzks.merkleTree.InvalidQParameterException;
-
-import java.security.NoSuchAlgorithmException;
-import java.util.Hashtable;
-import java.util.Map;
-import java.util.logging.Level;
-
-import junit.framework.TestCase;
-
-/**
- * Commitmemt Merkle Tree test case
- */
-@SuppressWarnings("unused")
-public class CommitmetMerkleTreeTest extends TestCase {
-
-	CommitmentMerkleTree commitmentMerkleTree;
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see junit.framework.TestCase#setUp()
-	 */
-	@Override
-	protected void setUp() throws Exception {
-		super.setUp();
-		commitmentMerkleTree = new CommitmentMerkleTree(160, 512, 8, "SHA-512");
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(java.lang.String, int)}
-	 * .
-	 */
-	public final void testCommitmentMerkleTreeStringIntLevel() {
-		try {
-			CommitmentMerkleTree comm = new CommitmentMerkleTree(
-					"params/a_181_603.properties", 8, "SHA-512");
-		} catch (InvalidQParameterException e) {
-			fail("Invalid q parameter");
-		} catch (InvalidECParameterException e) {
-			fail("Invalid EC parameters");
-		} catch (NoSuchAlgorithmException e) {
-			fail("Hash algorithm not valid");
-		} catch (ParameterValueMismatchException e) {
-			fail("Digest length and q value not compatible");
-		} catch (SecurityParameterNotSatisfiedException e) {
-			fail("The depth of the tree does not satisfy the security parameter");
-		}
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(java.lang.String, int)}
-	 * .
-	 */
-	public final void testCommitmentMerkleTreeStringIntLevelInvalidQ() {
-		try {
-			CommitmentMerkleTree comm = new CommitmentMerkleTree(
-					"params/a_181_603.properties", 1, "SHA-512");
-			fail("Invalid q parameter");
-		} catch (InvalidQParameterException e) {
-
-		} catch (InvalidECParameterException e) {
-			fail("Invalid EC parameters");
-		} catch (NoSuchAlgorithmException e) {
-			fail("Hash algorithm not valid");
-		} catch (ParameterValueMismatchException e) {
-			fail("Digest length and q value not compatible");
-		} catch (SecurityParameterNotSatisfiedException e) {
-			fail("The depth of the tree does not satisfy the security parameter");
-		}
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(java.lang.String, int)}
-	 * .
-	 */
-	public final void testCommitmentMerkleTreeStringIntLevelInvalidEC() {
-		try {
-			CommitmentMerkleTree comm = new CommitmentMerkleTree(
-					"params/a_181_603.prop", 8, "SHA-512");
-			fail("Invalid EC parameters");
-		} catch (InvalidQParameterException e) {
-			fail("Invalid q parameter");
-		} catch (InvalidECParameterException e) {
-			fail("EC parameter not valid");
-		} catch (NoSuchAlgorithmException e) {
-			fail("Hash algorithm not valid");
-		} catch (ParameterValueMismatchException e) {
-			fail("Digest length and q value not compatible");
-		} catch (SecurityParameterNotSatisfiedException e) {
-			fail("The depth of the tree does not satisfy the security parameter");
-		}
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(int, int, int)}
-	 * .
-	 */
-	public final void testCommitmentMerkleTreeIntIntIntLevel() {
-		try {
-			CommitmentMerkleTree comm = new CommitmentMerkleTree(160, 512, 8,
-					"SHA-512");
-		} catch (InvalidQParameterException e) {
-			fail("Invalid q parameter");
-		} catch (InvalidECParameterException e) {
-			fail("Invalid EC parameters");
-		} catch (NoSuchAlgorithmException e) {
-			fail("Hash algorithm not valid");
-		} catch (ParameterValueMismatchException e) {
-			fail("Digest length and q value not compatible");
-		} catch (SecurityParameterNotSatisfiedException e) {
-			fail("The depth of the tree does not satisfy the security parameter");
-		}
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(int, int, int)}
-	 * .
-	 */
-	public final void testCommitmentMerkleTreeIntIntIntLevelInvalidR() {
-		try {
-			CommitmentMerkleTree comm = new CommitmentMerkleTree(0, 512, 8,
-					"SHA-512");
-			fail("Invalid EC parameters");
-		} catch (InvalidQParameterException e) {
-			fail("Invalid q parameter");
-		} catch (InvalidECParameterException e) {
-			fail("EC parameter not valid");
-		} catch (NoSuchAlgorithmException e) {
-			fail("Hash algorithm not valid");
-		} catch (ParameterValueMismatchException e) {
-			fail("Digest length and q value not compatible");
-		} catch (SecurityParameterNotSatisfiedException e) {
-			fail("The depth of the tree does not satisfy the security parameter");
-		}
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(int, int, int)}
-	 * .
-	 */
-	public final void testCommitmentMerkleTreeIntIntIntLevelInvalidQ() {
-		try {
-			CommitmentMerkleTree comm = new CommitmentMerkleTree(160, 0, 8,
-					"SHA-512");
-			fail("Invalid EC parameters");
-		} catch (InvalidQParameterException e) {
-			fail("Invalid q parameter");
-		} catch (InvalidECParameterException e) {
-			fail("EC parameter not valid");
-		} catch (NoSuchAlgorithmException e) {
-			fail("Hash algorithm not valid");
-		} catch (ParameterValueMismatchException e) {
-			fail("Digest length and q value not compatible");
-		} catch (SecurityParameterNotSatisfiedException e) {
-			fail("The depth of the tree does not satisfy the security parameter");
-		}
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(it.unisa.dia.gas.plaf.jpbc.pairing.CurveParams, int)}
-	 * .
-	 */
-	public final void testCommitmentMerkleTreeCurveParamsInt() {
-		try {
-			TypeACurveGeneratorSafe curveGenerator = new TypeACurveGeneratorSafe(
-					160, 512);
-
-			CurveParams curveParams = new CurveParams();
-			Map<String, String> parameters = curveGenerator.generate();
-
-			curveParams.putAll(parameters);
-			CommitmentMerkleTree comm = new CommitmentMerkleTree(curveParams,
-					8, "SHA-512");
-		} catch (InvalidQParameterException e) {
-			fail("Invalid q parameter");
-		} catch (InvalidECParameterException e) {
-			fail("Invalid EC parameters");
-		} catch (NoSuchAlgorithmException e) {
-			fail("Hash algorithm not valid");
-		} catch (ParameterValueMismatchException e) {
-			fail("Digest length and q value not compatible");
-		} catch (SecurityParameterNotSatisfiedException e) {
-			fail("The depth of the tree does not satisfy the security parameter");
-		}
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#populateTreeLeaves(java.util.Hashtable)}
-	 * .
-	 */
-	public final void testPopulateTreeLeaves() {
-		Hashtable<String, Object> database = new Hashtable<String, Object>();
-		String key = "key";
-		String value = "value";
-		for (int i = 0; i < 10; i++)
-			database.put((key + i), (value + i));
-
-		assertTrue(commitmentMerkleTree.populateTreeLeaves(database));
-
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#populateTreeLeaves(java.util.Hashtable)}
-	 * .
-	 */
-	public final void testPopulateTreeLeavesNullDB() {
-		Hashtable<String, Object> database = null;
-
-		assertFalse(commitmentMerkleTree.populateTreeLeaves(database));
-
-	}
-
-	/**
-	 * Test method for
-	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#commit()}.
-	 */
-	public final void testCommit() {
-		testPopulateTreeLeaves();
-		CommitmentInformations commitmentInformations = commitmentMerkleTree
-				.commit();
-		assertFalse(commitmentInformations == null);
-	}
-
-}
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.edb.test;
+
+import it.unisa.dia.gas.plaf.jpbc.pairing.CurveParams;
+import it.unisa.dia.jzks.edb.CommitmentInformations;
+import it.unisa.dia.jzks.edb.CommitmentMerkleTree;
+import it.unisa.dia.jzks.edb.FailedZKSVerifyException;
+import it.unisa.dia.jzks.edb.InvalidECParameterException;
+import it.unisa.dia.jzks.edb.KeyMismatchZKSVerifyException;
+import it.unisa.dia.jzks.edb.MultiPiGreek;
+import it.unisa.dia.jzks.edb.ParameterValueMismatchException;
+import it.unisa.dia.jzks.edb.PiGreek;
+import it.unisa.dia.jzks.edb.SecurityParameterNotSatisfiedException;
+import it.unisa.dia.jzks.edb.SharedEvidence;
+import it.unisa.dia.jzks.edb.TypeACurveGeneratorSafe;
+import it.unisa.dia.jzks.edb.Utils;
+import it.unisa.dia.jzks.edb.ValueEncoder;
+import it.unisa.dia.jzks.edb.ZKSVerifier;
+import it.unisa.dia.jzks.edb.ZeroKnowledgeSet;
+import it.unisa.dia.jzks.merkleTree.ArrayMerkleTree;
+import it.unisa.dia.jzks.merkleTree.ExternalMerkleNode;
+import it.unisa.dia.jzks.merkleTree.InvalidQParameterException;
+import it.unisa.dia.jzks.merkleTree.KeyPath;
+import it.unisa.dia.jzks.merkleTree.LinkedMerkleTree;
+import it.unisa.dia.jzks.merkleTree.MerkleNode;
+import it.unisa.dia.jzks.merkleTree.MerkleTree;
+import it.unisa.dia.jzks.merkleTree.NodePath;
+import it.unisa.dia.jzks.merkleTree.RootMerkleNode;
+import it.unisa.dia.lasd.position.Position;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * Commitmemt Merkle Tree test case
+ */
+@SuppressWarnings("unused")
+public class CommitmetMerkleTreeTest extends TestCase {
+
+	/**
+	 * Number of keys of the test database
+	 */
+	private static final int KEYS = 4;
+
+	CommitmentMerkleTree commitmentMerkleTree;
+
+	/**
+	 * Database committed into the tree
+	 */
+	Hashtable<String, Object> database;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see junit.framework.TestCase#setUp()
+	 */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		// a small curve and a short digest keep the tests fast: MD5 digests
+		// and q=16 give trees of height 32
+		commitmentMerkleTree = new CommitmentMerkleTree(64, 128, 16, "MD5");
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(java.lang.String, int)}
+	 * .
+	 */
+	public final void testCommitmentMerkleTreeStringIntLevel() {
+		try {
+			CommitmentMerkleTree comm = new CommitmentMerkleTree(
+					"params/a_181_603.properties", 8, "SHA-512");
+		} catch (InvalidQParameterException e) {
+			fail("Invalid q parameter");
+		} catch (InvalidECParameterException e) {
+			fail("Invalid EC parameters");
+		} catch (NoSuchAlgorithmException e) {
+			fail("Hash algorithm not valid");
+		} catch (ParameterValueMismatchException e) {
+			fail("Digest length and q value not compatible");
+		} catch (SecurityParameterNotSatisfiedException e) {
+			fail("The depth of the tree does not satisfy the security parameter");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(java.lang.String, int)}
+	 * .
+	 */
+	public final void testCommitmentMerkleTreeStringIntLevelInvalidQ() {
+		try {
+			CommitmentMerkleTree comm = new CommitmentMerkleTree(
+					"params/a_181_603.properties", 1, "SHA-512");
+			fail("Invalid q parameter");
+		} catch (InvalidQParameterException e) {
+
+		} catch (InvalidECParameterException e) {
+			fail("Invalid EC parameters");
+		} catch (NoSuchAlgorithmException e) {
+			fail("Hash algorithm not valid");
+		} catch (ParameterValueMismatchException e) {
+			fail("Digest length and q value not compatible");
+		} catch (SecurityParameterNotSatisfiedException e) {
+			fail("The depth of the tree does not satisfy the security parameter");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(java.lang.String, int)}
+	 * .
+	 */
+	public final void testCommitmentMerkleTreeStringIntLevelInvalidEC() {
+		try {
+			CommitmentMerkleTree comm = new CommitmentMerkleTree(
+					"params/a_181_603.prop", 8, "SHA-512");
+			fail("Invalid EC parameters");
+		} catch (InvalidQParameterException e) {
+			fail("Invalid q parameter");
+		} catch (InvalidECParameterException e) {
+			fail("EC parameter not valid");
+		} catch (NoSuchAlgorithmException e) {
+			fail("Hash algorithm not valid");
+		} catch (ParameterValueMismatchException e) {
+			fail("Digest length and q value not compatible");
+		} catch (SecurityParameterNotSatisfiedException e) {
+			fail("The depth of the tree does not satisfy the security parameter");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(int, int, int)}
+	 * .
+	 */
+	public final void testCommitmentMerkleTreeIntIntIntLevel() {
+		try {
+			CommitmentMerkleTree comm = new CommitmentMerkleTree(160, 512, 8,
+					"SHA-512");
+		} catch (InvalidQParameterException e) {
+			fail("Invalid q parameter");
+		} catch (InvalidECParameterException e) {
+			fail("Invalid EC parameters");
+		} catch (NoSuchAlgorithmException e) {
+			fail("Hash algorithm not valid");
+		} catch (ParameterValueMismatchException e) {
+			fail("Digest length and q value not compatible");
+		} catch (SecurityParameterNotSatisfiedException e) {
+			fail("The depth of the tree does not satisfy the security parameter");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(int, int, int)}
+	 * .
+	 */
+	public final void testCommitmentMerkleTreeIntIntIntLevelInvalidR() {
+		try {
+			CommitmentMerkleTree comm = new CommitmentMerkleTree(0, 512, 8,
+					"SHA-512");
+			fail("Invalid EC parameters");
+		} catch (InvalidQParameterException e) {
+			fail("Invalid q parameter");
+		} catch (InvalidECParameterException e) {
+			fail("EC parameter not valid");
+		} catch (NoSuchAlgorithmException e) {
+			fail("Hash algorithm not valid");
+		} catch (ParameterValueMismatchException e) {
+			fail("Digest length and q value not compatible");
+		} catch (SecurityParameterNotSatisfiedException e) {
+			fail("The depth of the tree does not satisfy the security parameter");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(int, int, int)}
+	 * .
+	 */
+	public final void testCommitmentMerkleTreeIntIntIntLevelInvalidQ() {
+		try {
+			CommitmentMerkleTree comm = new CommitmentMerkleTree(160, 0, 8,
+					"SHA-512");
+			fail("Invalid EC parameters");
+		} catch (InvalidQParameterException e) {
+			fail("Invalid q parameter");
+		} catch (InvalidECParameterException e) {
+			fail("EC parameter not valid");
+		} catch (NoSuchAlgorithmException e) {
+			fail("Hash algorithm not valid");
+		} catch (ParameterValueMismatchException e) {
+			fail("Digest length and q value not compatible");
+		} catch (SecurityParameterNotSatisfiedException e) {
+			fail("The depth of the tree does not satisfy the security parameter");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#CommitmentMerkleTree(it.unisa.dia.gas.plaf.jpbc.pairing.CurveParams, int)}
+	 * .
+	 */
+	public final void testCommitmentMerkleTreeCurveParamsInt() {
+		try {
+			TypeACurveGeneratorSafe curveGenerator = new TypeACurveGeneratorSafe(
+					160, 512);
+
+			CurveParams curveParams = new CurveParams();
+			Map<String, String> parameters = curveGenerator.generate();
+
+			curveParams.putAll(parameters);
+			CommitmentMerkleTree comm = new CommitmentMerkleTree(curveParams,
+					8, "SHA-512");
+		} catch (InvalidQParameterException e) {
+			fail("Invalid q parameter");
+		} catch (InvalidECParameterException e) {
+			fail("Invalid EC parameters");
+		} catch (NoSuchAlgorithmException e) {
+			fail("Hash algorithm not valid");
+		} catch (ParameterValueMismatchException e) {
+			fail("Digest length and q value not compatible");
+		} catch (SecurityParameterNotSatisfiedException e) {
+			fail("The depth of the tree does not satisfy the security parameter");
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#populateTreeLeaves(java.util.Hashtable)}
+	 * .
+	 */
+	public final void testPopulateTreeLeaves() {
+		database = new Hashtable<String, Object>();
+		String key = "key";
+		String value = "value";
+		for (int i = 0; i < KEYS; i++)
+			database.put((key + i), (value + i));
+
+		assertTrue(commitmentMerkleTree.populateTreeLeaves(database));
+
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#populateTreeLeaves(java.util.Hashtable)}
+	 * : only the nodes on the key paths are stored.
+	 */
+	public final void testPopulateTreeLeavesPathsOnly() {
+		testPopulateTreeLeaves();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		assertTrue(tree.size() <= 1 + KEYS * tree.height());
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.merkleTree.MerkleTree#findChild(Position, int)}
+	 * .
+	 */
+	public final void testFindChildByIndex() {
+		testPopulateTreeLeaves();
+		assertFindChildByIndex(commitmentMerkleTree.getTree());
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.merkleTree.MerkleTree#findChild(Position, int)}
+	 * on an array-backed tree.
+	 */
+	public final void testFindChildByIndexArray()
+			throws InvalidQParameterException {
+		commitmentMerkleTree.setTree(new ArrayMerkleTree());
+		testPopulateTreeLeaves();
+		assertFindChildByIndex(commitmentMerkleTree.getTree());
+	}
+
+	private void assertFindChildByIndex(MerkleTree tree) {
+		Iterator<Position<MerkleNode>> nodeIter = tree.postOrderInternal();
+		while (nodeIter.hasNext()) {
+			Position<MerkleNode> parent = nodeIter.next();
+			assertNull(tree.findChild(parent, 0));
+			assertNull(tree.findChild(parent, tree.getQ() + 1));
+			for (Position<MerkleNode> child : tree.children(parent)) {
+				MerkleNode node = child.element();
+				Position<MerkleNode> found = tree.findChild(parent, node
+						.getIndex());
+				assertEquals(node.getPath(), found.element().getPath());
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link it.unisa.dia.jzks.merkleTree.NodePath}: each node
+	 * path is the parent path followed by the child index bits.
+	 */
+	public final void testNodePath() {
+		testPopulateTreeLeaves();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		Iterator<Position<MerkleNode>> nodeIter = tree.postOrderInternal();
+		while (nodeIter.hasNext()) {
+			Position<MerkleNode> parent = nodeIter.next();
+			NodePath parentPath = parent.element().getNodePath();
+			for (Position<MerkleNode> child : tree.children(parent)) {
+				MerkleNode node = child.element();
+				NodePath path = parentPath.child(node.getIndex(), tree
+						.getBitNode());
+				assertEquals(path, node.getNodePath());
+				assertEquals(path, NodePath.parse(node.getPath()));
+			}
+		}
+	}
+
+	/**
+	 * Test method for {@link it.unisa.dia.jzks.merkleTree.KeyPath}: the fixed
+	 * length path keeps all the digest bits, the legacy one is the binary
+	 * string of the absolute value of the digest.
+	 */
+	public final void testKeyPath() {
+		byte[] digest = { (byte) 0x80, 0x00, 0x5A, (byte) 0xFF };
+		KeyPath path = KeyPath.fromDigest(digest);
+		assertEquals(32, path.length());
+		assertEquals("10000000000000000101101011111111", path.toString());
+		assertEquals(5, path.index(0, 3));
+		assertEquals(0x5A + 1, path.index(16, 8));
+		assertEquals(0x1A + 1, path.index(19, 5));
+
+		KeyPath legacy = KeyPath.legacy(digest);
+		assertEquals(new BigInteger(digest).abs().toString(2), legacy
+				.toString());
+		assertEquals(KeyPath.fromBinaryString(legacy.toString()).toString(),
+				legacy.toString());
+
+		assertTrue(path.compareTo(KeyPath.fromBinaryString("0111")) > 0);
+		assertTrue(path.compareTo(KeyPath.fromBinaryString("1000")) > 0);
+		assertTrue(KeyPath.fromBinaryString("1000").compareTo(path) < 0);
+		assertTrue(path.compareTo(KeyPath
+				.fromBinaryString("10000000000000000101101011111110")) > 0);
+		assertEquals(0, path.compareTo(KeyPath.fromDigest(digest.clone())));
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#populateTreeLeaves(java.util.Hashtable)}
+	 * : all the leaves are at the same depth.
+	 */
+	public final void testPopulateTreeLeavesFixedDepth() {
+		testPopulateTreeLeaves();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		Iterator<Position<MerkleNode>> nodeIter = tree.postOrder();
+		while (nodeIter.hasNext()) {
+			MerkleNode node = nodeIter.next().element();
+			if (node instanceof ExternalMerkleNode)
+				assertEquals(tree.height() * tree.getBitNode(), node
+						.getNodePath().length());
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.merkleTree.MerkleTree#postOrderInternal()} and
+	 * {@link it.unisa.dia.jzks.merkleTree.MerkleTree#internalAtDepth(int)}:
+	 * the children are visited before the parents and the levels hold all the
+	 * internal nodes.
+	 */
+	public final void testInternalVisits() {
+		testPopulateTreeLeaves();
+		assertInternalVisits(commitmentMerkleTree.getTree());
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.merkleTree.MerkleTree#postOrderInternal()} and
+	 * {@link it.unisa.dia.jzks.merkleTree.MerkleTree#internalAtDepth(int)} on
+	 * an array-backed tree.
+	 */
+	public final void testInternalVisitsArray()
+			throws InvalidQParameterException {
+		commitmentMerkleTree.setTree(new ArrayMerkleTree());
+		testPopulateTreeLeaves();
+		assertInternalVisits(commitmentMerkleTree.getTree());
+	}
+
+	private void assertInternalVisits(MerkleTree tree) {
+		HashMap<String, Integer> visited = new HashMap<String, Integer>();
+		Iterator<Position<MerkleNode>> nodeIter = tree.postOrderInternal();
+		while (nodeIter.hasNext()) {
+			Position<MerkleNode> node = nodeIter.next();
+			if (!tree.hasLeaves(node))
+				for (Position<MerkleNode> child : tree.children(node))
+					assertTrue(visited.containsKey(child.element().getPath()));
+			visited.put(node.element().getPath(), visited.size());
+		}
+		int count = 0;
+		for (int depth = 0; depth < tree.height(); depth++)
+			for (Position<MerkleNode> node : tree.internalAtDepth(depth)) {
+				NodePath path = node.element().getNodePath();
+				assertEquals(depth * tree.getBitNode(), path.length());
+				assertTrue(visited.containsKey(path.render()));
+				count++;
+			}
+		assertEquals(visited.size(), count);
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#populateTreeLeaves(java.util.Hashtable)}
+	 * .
+	 */
+	public final void testPopulateTreeLeavesNullDB() {
+		Hashtable<String, Object> database = null;
+
+		assertFalse(commitmentMerkleTree.populateTreeLeaves(database));
+
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#populateTreeLeaves(java.util.Hashtable, int)}
+	 * .
+	 */
+	public final void testPopulateTreeLeavesParallel() {
+		database = new Hashtable<String, Object>();
+		String key = "key";
+		String value = "value";
+		for (int i = 0; i < KEYS; i++)
+			database.put((key + i), (value + i));
+
+		assertFalse(commitmentMerkleTree.populateTreeLeaves(database, 0));
+		assertTrue(commitmentMerkleTree.populateTreeLeaves(database, 4));
+		assertFalse(commitmentMerkleTree.populateTreeLeaves(null, 4));
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#commit()}.
+	 */
+	public final void testCommit() {
+		testPopulateTreeLeaves();
+		CommitmentInformations commitmentInformations = commitmentMerkleTree
+				.commit();
+		assertFalse(commitmentInformations == null);
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.Utils#internalNodeHash(MerkleNode)}: the
+	 * root keeps the encoding version and the first encoding is still
+	 * available.
+	 */
+	public final void testHashVersion() throws NoSuchAlgorithmException {
+		testCommit();
+		RootMerkleNode root = (RootMerkleNode) commitmentMerkleTree.getTree()
+				.root().element();
+		assertEquals(Utils.HASH_VERSION, root.getHashVersion());
+
+		Utils utils = new Utils(root.getHashAlgo(), Utils.HASH_VERSION_STRING);
+		byte[] stringHash = utils.makeHashValue(root.getCommitment().getC()
+				.toString()
+				+ root.getCommitment().getV().toString());
+		assertTrue(Arrays.equals(stringHash, utils.internalNodeHash(root)));
+		utils.setHashVersion(Utils.HASH_VERSION_BYTES);
+		assertFalse(Arrays.equals(stringHash, utils.internalNodeHash(root)));
+
+		try {
+			utils.setHashVersion(Utils.HASH_VERSION + 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals(Utils.HASH_VERSION_BYTES, utils.getHashVersion());
+		}
+	}
+
+	/**
+	 * Test method for {@link it.unisa.dia.jzks.edb.Utils#makeHashValue(Object)}:
+	 * the typed encoding differs from the serialized one and the registered
+	 * encoders are used.
+	 */
+	public final void testMakeHashValue() throws NoSuchAlgorithmException {
+		Utils typed = new Utils("SHA-1");
+		Utils serialized = new Utils("SHA-1", Utils.HASH_VERSION_BYTES);
+		assertEquals(Utils.HASH_VERSION_TYPED, typed.getHashVersion());
+		assertTrue(Arrays.equals(serialized.getDigestValue(serialized
+				.getBytes("key")), serialized.makeHashValue("key")));
+		assertFalse(Arrays.equals(serialized.makeHashValue("key"), typed
+				.makeHashValue("key")));
+		assertFalse(Arrays.equals(typed.makeHashValue("key"), typed
+				.makeHashValue("key".getBytes())));
+
+		byte[] unregistered = typed.makeHashValue(Integer.valueOf(7));
+		Utils.registerEncoder(Integer.class, new ValueEncoder<Integer>() {
+			public byte[] encode(Integer value) {
+				return BigInteger.valueOf(value).toByteArray();
+			}
+		});
+		try {
+			byte[] encoded = typed.makeHashValue(Integer.valueOf(7));
+			assertFalse(Arrays.equals(unregistered, encoded));
+			assertTrue(Arrays.equals(encoded, typed.makeHashValue(Integer
+					.valueOf(7))));
+			assertFalse(Arrays.equals(encoded, typed.makeHashValue(Integer
+					.valueOf(8))));
+		} finally {
+			Utils.registerEncoder(Integer.class, null);
+		}
+		assertTrue(Arrays.equals(unregistered, typed.makeHashValue(Integer
+				.valueOf(7))));
+
+		try {
+			Utils.registerEncoder(String.class, new ValueEncoder<String>() {
+				public byte[] encode(String value) {
+					return value.getBytes();
+				}
+			});
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	/**
+	 * Test method for {@link it.unisa.dia.jzks.edb.Utils#makeHashValue(Object)}
+	 * : a Utils shared by many threads gives the same digests of a single
+	 * thread.
+	 */
+	public final void testMakeHashValueConcurrent()
+			throws NoSuchAlgorithmException, InterruptedException,
+			ExecutionException {
+		final Utils utils = new Utils("SHA-1");
+		final String[] values = new String[1000];
+		byte[][] expected = new byte[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = "value" + i;
+			expected[i] = new Utils("SHA-1").makeHashValue(values[i]);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ArrayList<Future<byte[]>> hashes = new ArrayList<Future<byte[]>>();
+			for (int i = 0; i < values.length; i++) {
+				final String value = values[i];
+				hashes.add(executor.submit(new Callable<byte[]>() {
+					public byte[] call() {
+						return utils.makeHashValue(value);
+					}
+				}));
+			}
+			for (int i = 0; i < values.length; i++)
+				assertTrue(Arrays.equals(expected[i], hashes.get(i).get()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#commit(int)}.
+	 */
+	public final void testCommitParallel() throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException {
+		testPopulateTreeLeavesParallel();
+		assertNull(commitmentMerkleTree.commit(0));
+		CommitmentInformations commitmentInformations = commitmentMerkleTree
+				.commit(4);
+		assertFalse(commitmentInformations == null);
+
+		Iterator<Position<MerkleNode>> nodeIter = commitmentMerkleTree
+				.getTree().postOrderInternal();
+		while (nodeIter.hasNext())
+			assertFalse(nodeIter.next().element().getCommitment() == null);
+
+		assertProofs("key0", "key3", "newKey");
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#insert(java.lang.String, java.lang.Object)}
+	 * .
+	 */
+	public final void testInsert() throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException {
+		testCommit();
+		assertTrue(commitmentMerkleTree.insert("newKey", "newValue"));
+		database.put("newKey", "newValue");
+		assertFalse(commitmentMerkleTree.insert("newKey", "otherValue"));
+		assertFalse(commitmentMerkleTree.insert("key0", "otherValue"));
+		assertProofs("newKey", "key0", "otherKey");
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#update(java.lang.String, java.lang.Object)}
+	 * and
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#delete(java.lang.String)}
+	 * .
+	 */
+	public final void testUpdateDelete() throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException {
+		testCommit();
+		assertTrue(commitmentMerkleTree.update("key0", "newValue"));
+		database.put("key0", "newValue");
+		assertFalse(commitmentMerkleTree.update("newKey", "newValue"));
+		assertProofs("key0", "key2", "newKey");
+
+		assertTrue(commitmentMerkleTree.delete("key1"));
+		database.remove("key1");
+		assertFalse(commitmentMerkleTree.delete("key1"));
+		assertFalse(commitmentMerkleTree.update("key1", "newValue"));
+		assertProofs("key1", "key0", "key2");
+
+		assertTrue(commitmentMerkleTree.insert("key1", "newValue"));
+		database.put("key1", "newValue");
+		assertProofs("key1", "key2");
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#apply(java.util.Map)}
+	 * .
+	 */
+	public final void testApply() throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException {
+		testCommit();
+		Map<String, Object> changes = new HashMap<String, Object>();
+		changes.put("key0", "newValue");
+		changes.put("key1", null);
+		changes.put("newKey0", "newValue");
+		changes.put("newKey1", "newValue");
+		assertTrue(commitmentMerkleTree.apply(changes));
+		database.put("key0", "newValue");
+		database.remove("key1");
+		database.put("newKey0", "newValue");
+		database.put("newKey1", "newValue");
+		assertProofs("key0", "key1", "newKey0", "newKey1", "key2");
+
+		assertFalse(commitmentMerkleTree.insert("newKey0", "newValue"));
+		assertFalse(commitmentMerkleTree.delete("key1"));
+		assertTrue(commitmentMerkleTree.update("key0", "value0"));
+		database.put("key0", "value0");
+		assertProofs("key0", "key2");
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.CommitmentMerkleTree#setTree(it.unisa.dia.jzks.merkleTree.MerkleTree)}
+	 * with an array-backed tree.
+	 */
+	public final void testArrayTree() throws InvalidQParameterException,
+			FailedZKSVerifyException, KeyMismatchZKSVerifyException,
+			NoSuchAlgorithmException {
+		commitmentMerkleTree.setTree(new ArrayMerkleTree());
+		testPopulateTreeLeavesPathsOnly();
+		assertFalse(commitmentMerkleTree.commit() == null);
+
+		Iterator<Position<MerkleNode>> nodeIter = commitmentMerkleTree
+				.getTree().postOrderInternal();
+		while (nodeIter.hasNext())
+			assertFalse(nodeIter.next().element().getCommitment() == null);
+		assertProofs("key0", "key1", "newKey");
+
+		assertTrue(commitmentMerkleTree.insert("newKey", "newValue"));
+		database.put("newKey", "newValue");
+		assertFalse(commitmentMerkleTree.insert("newKey", "otherValue"));
+		assertTrue(commitmentMerkleTree.update("key0", "newValue"));
+		database.put("key0", "newValue");
+		assertTrue(commitmentMerkleTree.delete("key1"));
+		database.remove("key1");
+		assertFalse(commitmentMerkleTree.delete("key1"));
+		assertProofs("newKey", "key0", "key1", "key2");
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.ZeroKnowledgeSet#insert(String, Object)}
+	 * and {@link it.unisa.dia.jzks.edb.ZeroKnowledgeSet#apply(Map)} on a tree
+	 * loaded from XML.
+	 */
+	public final void testInsertLoadedTree() throws IOException,
+			FailedZKSVerifyException, KeyMismatchZKSVerifyException,
+			NoSuchAlgorithmException {
+		testCommit();
+		File file = File.createTempFile("tree", ".xml");
+		try {
+			commitmentMerkleTree.saveTreeToXML(file.getPath(), "UTF-8");
+			MerkleTree tree = LinkedMerkleTree.loadFromXML(file.getPath());
+			RootMerkleNode root = (RootMerkleNode) tree.root().element();
+			ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+			// the openings stored by these proofs are updated by the changes
+			zks.precomputeOpenings();
+			assertTrue(zks.insert("newKey", "newValue"));
+			assertProofs(tree, "newKey", "key0", "otherKey");
+
+			Map<String, Object> changes = new HashMap<String, Object>();
+			changes.put("newKey0", "newValue");
+			changes.put("key1", "newValue");
+			changes.put("key2", null);
+			assertTrue(zks.apply(changes));
+			assertProofs(tree, "newKey0", "key1", "key2", "newKey", "key3");
+			for (String key : new String[] { "key0", "key1", "newKey0" })
+				assertEquals(database.get(key), new ZKSVerifier().verifier(zks
+						.prove(key), key, root));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.merkleTree.LinkedMerkleTree#loadFromXML(String)}
+	 * : legacy-tree.xml.gz is a tree saved by the first releases, committed
+	 * with CommitmentMerkleTree(32, 64, 2, "MD5") on the database key0 =
+	 * value0. It has no key mapping attribute, no hash version and all the
+	 * siblings are stored.
+	 */
+	public final void testLoadLegacyTree() throws Exception {
+		File file = File.createTempFile("tree", ".xml");
+		try {
+			testPopulateTreeLeaves();
+			assertFalse(commitmentMerkleTree.commit() == null);
+			commitmentMerkleTree.saveTreeToXML(file.getPath(), "UTF-8");
+			assertFalse(LinkedMerkleTree.loadFromXML(file.getPath())
+					.isLegacyKeyPaths());
+
+			InputStream in = new GZIPInputStream(getClass().getResourceAsStream(
+					"legacy-tree.xml.gz"));
+			OutputStream out = new FileOutputStream(file);
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1)
+					out.write(buffer, 0, read);
+			} finally {
+				in.close();
+				out.close();
+			}
+			MerkleTree tree = LinkedMerkleTree.loadFromXML(file.getPath());
+			assertTrue(tree.isLegacyKeyPaths());
+			assertEquals(Utils.HASH_VERSION_STRING, ((RootMerkleNode) tree.root()
+					.element()).getHashVersion());
+			database = new Hashtable<String, Object>();
+			database.put("key0", "value0");
+			assertProofs(tree, "key0", "key1", "otherKey");
+
+			ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+			assertTrue(zks.insert("newKey", "newValue"));
+			assertTrue(zks.update("key0", "newValue"));
+			assertProofs(tree, "newKey", "key0", "otherKey");
+			assertTrue(zks.delete("key0"));
+			assertProofs(tree, "key0", "newKey", "otherKey");
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.ZKSVerifier#verifier(PiGreek, String, RootMerkleNode)}
+	 * : the proofs and the root are verified after saving them to XML and
+	 * loading them again.
+	 */
+	public final void testVerifyLoadedProof() throws IOException,
+			FailedZKSVerifyException, KeyMismatchZKSVerifyException,
+			NoSuchAlgorithmException {
+		testCommit();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+		File rootFile = File.createTempFile("root", ".xml");
+		File proofFile = File.createTempFile("proof", ".xml");
+		try {
+			((RootMerkleNode) tree.root().element()).saveToXML(rootFile
+					.getPath(), "UTF-8");
+			RootMerkleNode root = RootMerkleNode.loadFromXML(rootFile
+					.getPath());
+			for (String key : new String[] { "key1", "otherKey" }) {
+				zks.prove(key).saveToXML(proofFile.getPath(), "UTF-8");
+				assertEquals(database.get(key), new ZKSVerifier().verifier(
+						PiGreek.loadFromXML(proofFile.getPath()), key, root));
+			}
+		} finally {
+			rootFile.delete();
+			proofFile.delete();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.ZeroKnowledgeSet#prove(String)}: the
+	 * proofs of the keys in the database and of the missing keys are verified.
+	 */
+	public final void testProve() throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException {
+		testCommit();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+		for (String key : new String[] { "key0", "key3", "otherKey", "key" }) {
+			PiGreek proof = zks.prove(key);
+			assertEquals(database.containsKey(key), proof.isFound());
+			assertEquals(database.get(key), new ZKSVerifier().verifier(proof,
+					key, root));
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.ZeroKnowledgeSet#prove(String)}: many
+	 * threads prove keys of the same set at once.
+	 */
+	public final void testProveConcurrent() throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException,
+			InterruptedException, ExecutionException {
+		testCommit();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		final ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+		String[] keys = new String[4 * KEYS];
+		for (int i = 0; i < keys.length; i++)
+			keys[i] = ((i % 2 == 0) ? "key" : "otherKey") + (i / 2 % KEYS);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			ArrayList<Future<PiGreek>> proofs = new ArrayList<Future<PiGreek>>();
+			for (final String key : keys)
+				proofs.add(executor.submit(new Callable<PiGreek>() {
+					public PiGreek call() {
+						return zks.prove(key);
+					}
+				}));
+			for (int i = 0; i < keys.length; i++)
+				assertEquals(database.get(keys[i]), new ZKSVerifier()
+						.verifier(proofs.get(i).get(), keys[i], root));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.ZeroKnowledgeSet#proveAll(java.util.Collection)}
+	 * : present keys, missing keys and keys sharing a path prefix get the same
+	 * proofs as {@link it.unisa.dia.jzks.edb.ZeroKnowledgeSet#prove(String)},
+	 * in the order of the keys.
+	 */
+	public final void testProveAll() throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException {
+		testCommit();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+		ArrayList<String> keys = new ArrayList<String>(Arrays.asList("key2",
+				"otherKey", "key0", sharingKey("key0", 2), sharingKey("key0",
+						1), "key1"));
+
+		Map<String, PiGreek> proofs = zks.proveAll(keys);
+		assertEquals(keys, new ArrayList<String>(proofs.keySet()));
+		for (String key : keys) {
+			PiGreek proof = proofs.get(key);
+			PiGreek single = zks.prove(key);
+			assertEquals(single.isFound(), proof.isFound());
+			assertEquals(single.size(), proof.size());
+			assertEquals(database.get(key), new ZKSVerifier().verifier(proof,
+					key, root));
+			assertEquals(database.get(key), new ZKSVerifier().verifier(single,
+					key, root));
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.ZeroKnowledgeSet#proveMulti(java.util.Collection)}
+	 * and
+	 * {@link it.unisa.dia.jzks.edb.ZKSVerifier#verifier(MultiPiGreek, RootMerkleNode)}
+	 * : the proofs of present and missing keys are stored once for the shared
+	 * nodes, and they are verified after saving them to XML and loading them
+	 * again.
+	 */
+	public final void testProveMulti() throws IOException,
+			FailedZKSVerifyException, NoSuchAlgorithmException {
+		testCommit();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+		ArrayList<String> keys = multiKeys();
+
+		MultiPiGreek multiPiGreek = zks.proveMulti(keys);
+		int evidences = 0;
+		for (PiGreek proof : zks.proveAll(keys).values())
+			evidences += proof.size();
+		assertTrue(multiPiGreek.size() < evidences);
+		assertMultiValues(keys, new ZKSVerifier().verifier(multiPiGreek, root));
+
+		File file = File.createTempFile("multi", ".xml");
+		try {
+			multiPiGreek.saveToXML(file.getPath(), "UTF-8");
+			MultiPiGreek loaded = MultiPiGreek.loadFromXML(file.getPath());
+			assertEquals(multiPiGreek.size(), loaded.size());
+			assertMultiValues(keys, new ZKSVerifier().verifier(loaded, root));
+
+			// the proofs added to a loaded object share its evidences
+			keys.add("key3");
+			loaded = MultiPiGreek.loadFromXML(file.getPath());
+			loaded.addProof(zks.prove("key3"));
+			assertEquals(zks.proveMulti(keys).size(), loaded.size());
+			assertMultiValues(keys, new ZKSVerifier().verifier(loaded, root));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Test method for
+	 * {@link it.unisa.dia.jzks.edb.ZKSVerifier#verifier(MultiPiGreek, RootMerkleNode)}
+	 * : the proofs with a wrong parent, with a shared node that disagrees or
+	 * with a changed value are rejected.
+	 */
+	public final void testVerifyMultiTampered() throws IOException,
+			NoSuchAlgorithmException {
+		testCommit();
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+		ArrayList<String> keys = multiKeys();
+
+		MultiPiGreek wrongParent = zks.proveMulti(keys);
+		SharedEvidence leaf1 = wrongParent.get(wrongParent.getLeaf("key1"));
+		int parent2 = wrongParent.get(wrongParent.getLeaf("key2")).getParent();
+		assertFalse(leaf1.getParent() == parent2);
+		leaf1.setParent(parent2);
+		assertRejected(wrongParent, root);
+
+		MultiPiGreek disagreeing = zks.proveMulti(keys);
+		SharedEvidence sibling = null;
+		for (int k = 1; k < disagreeing.size() && sibling == null; k++)
+			for (int j = 0; j < k; j++)
+				if (disagreeing.get(k).getParent() >= 0
+						&& disagreeing.get(k).getParent() == disagreeing.get(j)
+								.getParent())
+					sibling = disagreeing.get(k);
+		assertNotNull(sibling);
+		sibling.setC(sibling.getC().duplicate().twice());
+		assertRejected(disagreeing, root);
+
+		File file = File.createTempFile("multi", ".xml");
+		try {
+			zks.proveMulti(keys).saveToXML(file.getPath(), "UTF-8");
+			String xml = readFile(file);
+			assertTrue(xml.indexOf("<string>value1</string>") != -1);
+			FileWriter writer = new FileWriter(file);
+			writer.write(xml.replace("<string>value1</string>",
+					"<string>forged</string>"));
+			writer.close();
+			assertRejected(MultiPiGreek.loadFromXML(file.getPath()), root);
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Keys for the proofs of many keys: present keys, missing keys and
+	 * missing keys sharing the first levels of their paths
+	 * 
+	 * @return the keys
+	 */
+	private ArrayList<String> multiKeys() throws NoSuchAlgorithmException {
+		return new ArrayList<String>(Arrays.asList("key0", "key1", "key2",
+				"otherKey", sharingKey("otherKey", 1), sharingKey("otherKey",
+						2)));
+	}
+
+	/**
+	 * Check the values verified for many keys against the database
+	 * 
+	 * @param keys
+	 *            The keys proved
+	 * @param values
+	 *            The values returned by the verifier
+	 */
+	private void assertMultiValues(ArrayList<String> keys,
+			Map<String, Object> values) {
+		assertEquals(keys, new ArrayList<String>(values.keySet()));
+		for (String key : keys)
+			assertEquals(database.get(key), values.get(key));
+	}
+
+	/**
+	 * Check that the verifier rejects some proofs
+	 * 
+	 * @param multiPiGreek
+	 *            The proofs
+	 * @param root
+	 *            The root information
+	 */
+	private static void assertRejected(MultiPiGreek multiPiGreek,
+			RootMerkleNode root) throws NoSuchAlgorithmException {
+		try {
+			new ZKSVerifier().verifier(multiPiGreek, root);
+			fail();
+		} catch (FailedZKSVerifyException e) {
+		}
+	}
+
+	/**
+	 * Find a key missing from the database whose path starts with the same
+	 * levels as the path of another key, and then leaves it
+	 * 
+	 * @param key
+	 *            The other key
+	 * @param levels
+	 *            Number of levels shared by the two paths
+	 * @return the key found
+	 */
+	private String sharingKey(String key, int levels)
+			throws NoSuchAlgorithmException {
+		MerkleTree tree = commitmentMerkleTree.getTree();
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		Utils utils = new Utils(root.getHashAlgo(), root.getHashVersion());
+		int log = tree.getBitNode();
+		int bits = levels * log;
+		KeyPath path = tree.keyPath(utils.makeHashValue(key));
+		for (int i = 0;; i++) {
+			String other = key + "-" + i;
+			KeyPath otherPath = tree.keyPath(utils.makeHashValue(other));
+			if ((otherPath.chunk(0, bits) == path.chunk(0, bits))
+					&& (otherPath.chunk(bits, log) != path.chunk(bits, log)))
+				return other;
+		}
+	}
+
+	/**
+	 * Read a whole text file
+	 * 
+	 * @param file
+	 *            The file to read
+	 * @return the file content
+	 */
+	private static String readFile(File file) throws IOException {
+		StringBuilder content = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null)
+				content.append(line).append('\n');
+		} finally {
+			reader.close();
+		}
+		return content.toString();
+	}
+
+	/**
+	 * Prove the keys with the committed tree and check the proofs with the
+	 * verifier: each key must give its value in the database, null if it is
+	 * not in the database
+	 * 
+	 * @param keys
+	 *            The keys to prove
+	 */
+	private void assertProofs(String... keys) throws FailedZKSVerifyException,
+			KeyMismatchZKSVerifyException, NoSuchAlgorithmException {
+		assertProofs(commitmentMerkleTree.getTree(), keys);
+	}
+
+	/**
+	 * Prove the keys with a committed tree and check the proofs with the
+	 * verifier
+	 * 
+	 * @param tree
+	 *            The committed tree
+	 * @param keys
+	 *            The keys to prove
+	 */
+	private void assertProofs(MerkleTree tree, String... keys)
+			throws FailedZKSVerifyException, KeyMismatchZKSVerifyException,
+			NoSuchAlgorithmException {
+		RootMerkleNode root = (RootMerkleNode) tree.root().element();
+		ZeroKnowledgeSet zks = new ZeroKnowledgeSet(database, tree);
+		for (String key : keys)
+			assertEquals(database.get(key), new ZKSVerifier().verifier(zks
+					.prove(key), key, root));
+	}
+
+}
@@ -0,0 +1,1030 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.merkleTree;
+
+import it.unisa.dia.jzks.edb.Utils;
+import it.unisa.dia.jzks.qTMC.OutputCommit;
+import it.unisa.dia.lasd.position.InvalidPositionException;
+import it.unisa.dia.lasd.position.Position;
+
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.annotations.XStreamAlias;
+import com.thoughtworks.xstream.annotations.XStreamAsAttribute;
+import com.thoughtworks.xstream.io.xml.XppReader;
+
+import edu.uci.ics.jung.graph.Forest;
+
+/**
+ * Merkle tree stored in flat arrays indexed by node id: there are no node
+ * objects, path strings or child lists. Every internal node with children
+ * owns a block of q slots in the children array, so the child with index i is
+ * read at block+i-1. The node objects returned by the positions are built on
+ * demand from the arrays, and they are written back by replace.
+ */
+@XStreamAlias("ArrayMerkleTree")
+public class ArrayMerkleTree implements MerkleTree {
+
+	/**
+	 * Root id
+	 */
+	private static final int ROOT = 0;
+
+	/**
+	 * No node
+	 */
+	private static final int NONE = -1;
+
+	/**
+	 * Internal node type
+	 */
+	private static final byte INTERNAL = 0;
+
+	/**
+	 * Leaf type
+	 */
+	private static final byte EXTERNAL = 1;
+
+	/**
+	 * Initial number of nodes
+	 */
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * Logger
+	 */
+	private static final Logger logger = Logger
+			.getLogger("it.unisa.dia.jzks.merkleTree.ArrayMerkleTree");
+
+	/**
+	 * q parameter (default 8)
+	 */
+	@XStreamAsAttribute
+	private int q = 8;
+
+	/**
+	 * Lambda parameter (default 160)
+	 */
+	@XStreamAsAttribute
+	private int lambda = 160;
+
+	/**
+	 * Number of path bits used per node (it defines tree height)
+	 */
+	@XStreamAsAttribute
+	private int bitNode = 3;
+
+	/**
+	 * Random seed to setup a pseudorandom generator needed to create the paths
+	 * from frontiers nodes to leaves don't belong to the tree
+	 */
+	@XStreamAlias("seed")
+	private byte[] baseSeed;
+
+	/**
+	 * Keys mapped to the leaves as in the first releases (see
+	 * {@link KeyPath#legacy(byte[])}); trees saved by the first releases have
+	 * no attribute, so a missing value means legacy
+	 */
+	@XStreamAsAttribute
+	private Boolean legacyKeyPaths = Boolean.FALSE;
+
+	/**
+	 * Number of nodes
+	 */
+	@XStreamAsAttribute
+	private int size;
+
+	/**
+	 * Number of used slots in the children array
+	 */
+	@XStreamAsAttribute
+	private int slotCount;
+
+	/**
+	 * Root node (it keeps the informations needed by users)
+	 */
+	private MerkleNode root;
+
+	/**
+	 * Parent id of every node
+	 */
+	private int[] parents;
+
+	/**
+	 * Index of every node into its parent
+	 */
+	private int[] indexes;
+
+	/**
+	 * Type of every node: internal or leaf
+	 */
+	private byte[] types;
+
+	/**
+	 * Hard or soft commitment flag of every internal node
+	 */
+	private int[] flags;
+
+	/**
+	 * Commitment of every node
+	 */
+	private OutputCommit[] commitments;
+
+	/**
+	 * Seed of every internal node
+	 */
+	private byte[][] seeds;
+
+	/**
+	 * Key of every leaf
+	 */
+	private String[] keys;
+
+	/**
+	 * First slot of the children block of every node (NONE if the node has no
+	 * children)
+	 */
+	private int[] blocks;
+
+	/**
+	 * Number of children of every node
+	 */
+	private int[] childCounts;
+
+	/**
+	 * Children blocks: q slots for each node with children, holding the child
+	 * ids (NONE for missing children)
+	 */
+	private int[] slots;
+
+	/**
+	 * Constructor
+	 */
+	public ArrayMerkleTree() {
+		parents = new int[INITIAL_CAPACITY];
+		indexes = new int[INITIAL_CAPACITY];
+		types = new byte[INITIAL_CAPACITY];
+		flags = new int[INITIAL_CAPACITY];
+		commitments = new OutputCommit[INITIAL_CAPACITY];
+		seeds = new byte[INITIAL_CAPACITY][];
+		keys = new String[INITIAL_CAPACITY];
+		blocks = new int[INITIAL_CAPACITY];
+		childCounts = new int[INITIAL_CAPACITY];
+		slots = new int[INITIAL_CAPACITY * q];
+
+		RootMerkleNode rootNode = new RootMerkleNode();
+		rootNode.setIndex(MerkleNode.ROOT_INDEX);
+		rootNode.setNodePath(NodePath.ROOT);
+		root = rootNode;
+
+		size = 1;
+		parents[ROOT] = NONE;
+		indexes[ROOT] = MerkleNode.ROOT_INDEX;
+		types[ROOT] = INTERNAL;
+		blocks[ROOT] = NONE;
+	}
+
+	/**
+	 * Position of a node: the node id
+	 */
+	private class NodePosition implements Position<MerkleNode> {
+
+		/**
+		 * Node id
+		 */
+		private int id;
+
+		/**
+		 * Constructor
+		 *
+		 * @param id
+		 *            Node id
+		 */
+		public NodePosition(int id) {
+			this.id = id;
+		}
+
+		/**
+		 * Build the node from the arrays
+		 */
+		public MerkleNode element() {
+			return node(id);
+		}
+
+		/**
+		 * Get the tree of the position
+		 */
+		private ArrayMerkleTree tree() {
+			return ArrayMerkleTree.this;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof ArrayMerkleTree.NodePosition))
+				return false;
+			NodePosition p = (NodePosition) o;
+			return p.tree() == tree() && p.id == id;
+		}
+
+		public int hashCode() {
+			return id;
+		}
+	}
+
+	/**
+	 * Leaf built from the arrays: its path is built from the ancestors the
+	 * first time it is asked for, as most of the nodes read never need it
+	 */
+	private class ArrayExternalNode extends ExternalMerkleNode {
+
+		/**
+		 * Node id
+		 */
+		private int id;
+
+		/**
+		 * Constructor
+		 *
+		 * @param id
+		 *            Node id
+		 */
+		public ArrayExternalNode(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public NodePath getNodePath() {
+			if (super.getNodePath() == null)
+				setNodePath(path(id));
+			return super.getNodePath();
+		}
+	}
+
+	/**
+	 * Internal node built from the arrays: its path is built from the
+	 * ancestors the first time it is asked for
+	 */
+	private class ArrayInternalNode extends InternalMerkleNode {
+
+		/**
+		 * Node id
+		 */
+		private int id;
+
+		/**
+		 * Constructor
+		 *
+		 * @param id
+		 *            Node id
+		 */
+		public ArrayInternalNode(int id) {
+			this.id = id;
+		}
+
+		@Override
+		public NodePath getNodePath() {
+			if (super.getNodePath() == null)
+				setNodePath(path(id));
+			return super.getNodePath();
+		}
+	}
+
+	/**
+	 * Get the id of a position of this tree
+	 *
+	 * @param p
+	 *            The position
+	 * @return Node id
+	 */
+	private int id(Position<MerkleNode> p) {
+		if (!(p instanceof ArrayMerkleTree.NodePosition)
+				|| ((NodePosition) p).tree() != this)
+			throw new InvalidPositionException("Invalid position");
+		return ((NodePosition) p).id;
+	}
+
+	/**
+	 * Build the node object of an id
+	 *
+	 * @param id
+	 *            Node id
+	 * @return the node
+	 */
+	private MerkleNode node(int id) {
+		if (id == ROOT)
+			return root;
+
+		MerkleNode node;
+		if (types[id] == EXTERNAL) {
+			ExternalMerkleNode leaf = new ArrayExternalNode(id);
+			leaf.setKey(keys[id]);
+			node = leaf;
+		} else {
+			InternalMerkleNode internal = new ArrayInternalNode(id);
+			internal.setFlag(flags[id]);
+			internal.setSeed(seeds[id]);
+			node = internal;
+		}
+		node.setIndex(indexes[id]);
+		node.setCommitment(commitments[id]);
+		return node;
+	}
+
+	/**
+	 * Store a node object into the arrays (the index and the path are given by
+	 * the position of the node)
+	 *
+	 * @param id
+	 *            Node id
+	 * @param node
+	 *            The node
+	 */
+	private void write(int id, MerkleNode node) {
+		commitments[id] = node.getCommitment();
+		if (node instanceof ExternalMerkleNode) {
+			types[id] = EXTERNAL;
+			keys[id] = ((ExternalMerkleNode) node).getKey();
+			flags[id] = 0;
+			seeds[id] = null;
+		} else {
+			types[id] = INTERNAL;
+			keys[id] = null;
+			flags[id] = ((InternalMerkleNode) node).getFlag();
+			seeds[id] = ((InternalMerkleNode) node).getSeed();
+		}
+	}
+
+	/**
+	 * Build the path of a node from the indexes of its ancestors
+	 *
+	 * @param id
+	 *            Node id
+	 * @return the node path
+	 */
+	private NodePath path(int id) {
+		int depth = 0;
+		for (int i = id; i != ROOT; i = parents[i])
+			depth++;
+		int[] path = new int[depth];
+		for (int i = id; i != ROOT; i = parents[i])
+			path[--depth] = indexes[i];
+		return NodePath.fromIndexes(path, path.length, bitNode);
+	}
+
+	/**
+	 * Get a child id
+	 *
+	 * @param id
+	 *            Parent id
+	 * @param index
+	 *            Child index (from 1 to q)
+	 * @return the child id, NONE if the child is not in the tree
+	 */
+	private int child(int id, int index) {
+		if (blocks[id] == NONE)
+			return NONE;
+		return slots[blocks[id] + index - 1];
+	}
+
+	/**
+	 * Add a node to the tree
+	 *
+	 * @param parent
+	 *            Parent id
+	 * @param index
+	 *            Index of the new node (from 1 to q)
+	 * @param node
+	 *            The new node
+	 * @return the new node id
+	 */
+	private int add(int parent, int index, MerkleNode node) {
+		if (size == parents.length) {
+			int capacity = 2 * size;
+			parents = Arrays.copyOf(parents, capacity);
+			indexes = Arrays.copyOf(indexes, capacity);
+			types = Arrays.copyOf(types, capacity);
+			flags = Arrays.copyOf(flags, capacity);
+			commitments = Arrays.copyOf(commitments, capacity);
+			seeds = Arrays.copyOf(seeds, capacity);
+			keys = Arrays.copyOf(keys, capacity);
+			blocks = Arrays.copyOf(blocks, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+		}
+		int id = size++;
+		parents[id] = parent;
+		indexes[id] = index;
+		blocks[id] = NONE;
+		childCounts[id] = 0;
+		write(id, node);
+
+		if (blocks[parent] == NONE) {
+			if (slotCount + q > slots.length)
+				slots = Arrays.copyOf(slots, 2 * (slotCount + q));
+			blocks[parent] = slotCount;
+			Arrays.fill(slots, slotCount, slotCount + q, NONE);
+			slotCount += q;
+		}
+		slots[blocks[parent] + index - 1] = id;
+		childCounts[parent]++;
+		return id;
+	}
+
+	/**
+	 * Get the q parameter
+	 */
+	public int getQ() {
+		return q;
+	}
+
+	/**
+	 * Set the q parameter
+	 */
+	public void setQ(int q) throws InvalidQParameterException {
+		if (slotCount > 0)
+			throw new IllegalStateException("The tree is not empty");
+		if ((q > 1) && ((q & (q - 1)) == 0)) {
+			this.q = q;
+			bitNode = ((Double) (Math.log(q) / Math.log(2))).intValue();
+		} else
+			throw new InvalidQParameterException(
+					"The parameter q must be > 1 and power of 2");
+	}
+
+	/**
+	 * Get the number of path bits used per node
+	 *
+	 * @return the bitNode
+	 */
+	public int getBitNode() {
+		return bitNode;
+	}
+
+	/**
+	 * Set the number of path bits used per node
+	 *
+	 * @param bitNode
+	 *            the bitNode to set
+	 */
+	public void setBitNode(int bitNode) {
+		this.bitNode = bitNode;
+	}
+
+	/**
+	 * @return the lambda
+	 */
+	public int getLambda() {
+		return lambda;
+	}
+
+	/**
+	 * @param lambda
+	 *            the lambda to set
+	 */
+	public void setLambda(int lambda) {
+		this.lambda = lambda;
+	}
+
+	/**
+	 * Get the base seed
+	 *
+	 * @return the baseSeed
+	 */
+	public byte[] getBaseSeed() {
+		return baseSeed;
+	}
+
+	/**
+	 * Check if the keys are mapped to the leaves as in the first releases
+	 *
+	 * @return the legacyKeyPaths
+	 */
+	public boolean isLegacyKeyPaths() {
+		return !Boolean.FALSE.equals(legacyKeyPaths);
+	}
+
+	/**
+	 * Set the key mapping: it must be set before populating the tree
+	 *
+	 * @param legacyKeyPaths
+	 *            true to use the legacy key paths
+	 */
+	public void setLegacyKeyPaths(boolean legacyKeyPaths) {
+		this.legacyKeyPaths = Boolean.valueOf(legacyKeyPaths);
+	}
+
+	/**
+	 * Set random seed to setup a pseudorandom generator needed to create the
+	 * paths from frontiers nodes to leaves don't belong to the tree
+	 *
+	 * @param baseSeed
+	 *            the baseSeed to set
+	 */
+	public void setBaseSeed(byte[] baseSeed) {
+		this.baseSeed = baseSeed;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see merkleTree.MerkleTree#insert(merkleTree.ExternalMerkleNode, byte[],
+	 * int)
+	 */
+	public Position<MerkleNode> insert(ExternalMerkleNode node, byte[] keyHash,
+			int cursor) throws InvalidExternalMerkleNodeException,
+			MalformedTreeException {
+
+		return insert(node, keyPath(keyHash), cursor);
+
+	}
+
+	/**
+	 * Insert a new node in the Merkle Tree following a path given as a
+	 * binary string
+	 *
+	 * @param node
+	 *            New node to insert
+	 * @param completePath
+	 *            New node path
+	 * @param cursor
+	 *            Path index
+	 * @return New node position
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid
+	 */
+	public Position<MerkleNode> insert(ExternalMerkleNode node,
+			String completePath, int cursor)
+			throws InvalidExternalMerkleNodeException, MalformedTreeException {
+		return insert(node, KeyPath.fromBinaryString(completePath), cursor);
+	}
+
+	/**
+	 * Get the path of a key hash in the tree
+	 *
+	 * @param keyHash
+	 *            Key hash
+	 * @return the key path
+	 */
+	public KeyPath keyPath(byte[] keyHash) {
+		if (isLegacyKeyPaths())
+			return KeyPath.legacy(keyHash);
+		return KeyPath.fromDigest(keyHash);
+	}
+
+	/**
+	 * Insert a new node in the Merkle Tree. Only the nodes on the node path
+	 * are added: the empty siblings are virtual, their commitments are derived
+	 * from the parent seed when the parent is committed
+	 *
+	 * @param node
+	 *            New node to insert
+	 * @param path
+	 *            New node key path
+	 * @param cursor
+	 *            Path index
+	 * @return New node position
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid
+	 */
+	public Position<MerkleNode> insert(ExternalMerkleNode node, KeyPath path,
+			int cursor) throws InvalidExternalMerkleNodeException,
+			MalformedTreeException {
+		if (node == null)
+			throw new InvalidExternalMerkleNodeException(
+					"The node is not valid");
+
+		MalformedTreeException treeNotValid = new MalformedTreeException(
+				"Tree not valid.");
+
+		int parent = ROOT;
+		while ((cursor + bitNode + bitNode) <= path.length()) {
+			int index = path.index(cursor, bitNode);
+			int next = child(parent, index);
+			if (next == NONE) {
+				if (hasLeaves(parent))
+					throw treeNotValid;
+				next = add(parent, index, new InternalMerkleNode());
+			} else if (types[next] != INTERNAL)
+				throw treeNotValid;
+
+			parent = next;
+			cursor += bitNode;
+		}
+
+		int index = path.index(cursor, bitNode);
+		node.setIndex(index);
+		node.setNodePath(path(parent).child(index, bitNode));
+
+		int current = child(parent, index);
+		if (current == NONE) {
+			if (childCounts[parent] > 0 && !hasLeaves(parent))
+				throw treeNotValid;
+			if (logger.isLoggable(Level.FINER))
+				logger.finer("Leaf Add - " + node.getNodePath());
+			current = add(parent, index, node);
+		} else if (types[current] == EXTERNAL) {
+			if (logger.isLoggable(Level.FINER))
+				logger.finer("Leaf Replace - " + node.getNodePath());
+			if (!keys[current].equals(MerkleNode.EMPTY_KEY))
+				throw new MalformedTreeException("Conflict.");
+			write(current, node);
+		} else
+			throw treeNotValid;
+
+		return new NodePosition(current);
+	}
+
+	/**
+	 * Index of the child selected by a piece of a path
+	 *
+	 * @param completePath
+	 *            The path
+	 * @param cursor
+	 *            Path index of the child piece
+	 * @return Child index (from 1 to q)
+	 */
+	private int pathToIndex(String completePath, int cursor) {
+		int index = 0;
+		for (int j = cursor; j < cursor + bitNode; j++) {
+			char bit = completePath.charAt(j);
+			if ((bit != '0') && (bit != '1'))
+				throw new NumberFormatException("Invalid path: "
+						+ completePath);
+			index = (index << 1) | (bit - '0');
+		}
+		return index + 1;
+	}
+
+	/**
+	 * Check if the children of a node are leaves
+	 *
+	 * @param id
+	 *            Parent id
+	 * @return true if the node has at least a child and its children are
+	 *         leaves
+	 */
+	private boolean hasLeaves(int id) {
+		if (childCounts[id] == 0)
+			return false;
+		for (int i = 1; i <= q; i++) {
+			int child = child(id, i);
+			if (child != NONE)
+				return types[child] == EXTERNAL;
+		}
+		return false;
+	}
+
+	/**
+	 * Check if the children of a node are leaves
+	 *
+	 * @param parent
+	 *            Parent node
+	 * @return true if the node has at least a child and its children are
+	 *         leaves
+	 */
+	public boolean hasLeaves(Position<MerkleNode> parent) {
+		return hasLeaves(id(parent));
+	}
+
+	/**
+	 * Find a child of a node: the child index is read from the last piece of
+	 * the key
+	 *
+	 * @param parent
+	 *            Parent node
+	 * @param localKey
+	 *            Key to follow to obtain the path
+	 * @return Child node with localkey as path
+	 */
+	public Position<MerkleNode> findChild(Position<MerkleNode> parent,
+			String localKey) {
+		if (localKey.length() < bitNode)
+			return null;
+		try {
+			return findChild(parent, pathToIndex(localKey, localKey.length()
+					- bitNode));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Find a child of a node by its index: the child is read from the
+	 * children block of the parent
+	 *
+	 * @param parent
+	 *            Parent node
+	 * @param index
+	 *            Child index (from 1 to q)
+	 * @return Child node with the given index, null if it is not in the tree
+	 */
+	public Position<MerkleNode> findChild(Position<MerkleNode> parent,
+			int index) {
+		if ((index < 1) || (index > q))
+			return null;
+		int child = child(id(parent), index);
+		if (child == NONE)
+			return null;
+		return new NodePosition(child);
+	}
+
+	/**
+	 * Tree root
+	 */
+	public Position<MerkleNode> root() {
+		return new NodePosition(ROOT);
+	}
+
+	/**
+	 * Check if a node is the tree root
+	 *
+	 * @param node
+	 *            Node to check
+	 * @return Boolean value: true if the node is the tree root, false otherwise
+	 */
+	public boolean isRoot(Position<MerkleNode> node) {
+		return id(node) == ROOT;
+	}
+
+	/**
+	 * Parent of a node
+	 *
+	 * @param node
+	 *            Child node
+	 * @return Parent node, null for the root
+	 */
+	public Position<MerkleNode> parent(Position<MerkleNode> node) {
+		int parent = parents[id(node)];
+		if (parent == NONE)
+			return null;
+		return new NodePosition(parent);
+	}
+
+	/**
+	 * Internal node children
+	 *
+	 * @param node
+	 *            Parent node
+	 * @return Iterable structure of parent node children, by index
+	 */
+	public Iterable<Position<MerkleNode>> children(Position<MerkleNode> node) {
+		int id = id(node);
+		ArrayList<Position<MerkleNode>> children = new ArrayList<Position<MerkleNode>>();
+		for (int i = 1; i <= q && children.size() < childCounts[id]; i++) {
+			int child = child(id, i);
+			if (child != NONE)
+				children.add(new NodePosition(child));
+		}
+		return children;
+	}
+
+	/**
+	 * Number of children of a node
+	 *
+	 * @param node
+	 *            Parent node
+	 * @return Number of children
+	 */
+	public int numberOfChildren(Position<MerkleNode> node) {
+		return childCounts[id(node)];
+	}
+
+	/**
+	 * Replace the node position with a new node
+	 *
+	 * @param nodePos
+	 *            Node position to replace
+	 * @param node
+	 *            New node
+	 * @return Node replaced
+	 */
+	public MerkleNode replace(Position<MerkleNode> nodePos, MerkleNode node) {
+		int id = id(nodePos);
+		MerkleNode old = node(id);
+		if (id == ROOT)
+			root = node;
+		else
+			write(id, node);
+		return old;
+	}
+
+	/**
+	 * Visit the tree in post order way
+	 *
+	 * @return Internal nodes iterator
+	 */
+	public Iterator<Position<MerkleNode>> postOrderInternal() {
+		return new PostOrderIterator(this, true);
+	}
+
+	/**
+	 * Post order visit
+	 *
+	 * @return tree nodes iterator
+	 */
+	public Iterator<Position<MerkleNode>> postOrder() {
+		return new PostOrderIterator(this, false);
+	}
+
+	/**
+	 * Preorder visit of the tree
+	 *
+	 * @return Iterator of all nodes
+	 */
+	public Iterator<Position<MerkleNode>> preOrder() {
+		ArrayList<Position<MerkleNode>> list = new ArrayList<Position<MerkleNode>>();
+		preOrder(ROOT, list);
+		return list.iterator();
+	}
+
+	/**
+	 * Preorder visit (aux method for recursion)
+	 *
+	 * @param id
+	 *            Current node id
+	 * @param list
+	 *            Visited nodes
+	 */
+	private void preOrder(int id, ArrayList<Position<MerkleNode>> list) {
+		list.add(new NodePosition(id));
+		for (int i = 1; i <= q && childCounts[id] > 0; i++) {
+			int child = child(id, i);
+			if (child != NONE)
+				preOrder(child, list);
+		}
+	}
+
+	/**
+	 * Depth of every node; a parent always has a lower id than its children
+	 *
+	 * @return the depths by node id
+	 */
+	private int[] depths() {
+		int[] depths = new int[size];
+		for (int id = 1; id < size; id++)
+			depths[id] = depths[parents[id]] + 1;
+		return depths;
+	}
+
+	/**
+	 * Iterable structure of all nodes at a depth
+	 *
+	 * @param depth
+	 *            Depth of the nodes to return
+	 */
+	public Iterable<Position<MerkleNode>> atDepth(final int depth) {
+		return new Iterable<Position<MerkleNode>>() {
+			public Iterator<Position<MerkleNode>> iterator() {
+				return new DepthIterator(ArrayMerkleTree.this, depth, false);
+			}
+		};
+	}
+
+	/**
+	 * Iterable structure of the internal nodes at a depth
+	 *
+	 * @param depth
+	 *            Depth of the nodes to return
+	 */
+	public Iterable<Position<MerkleNode>> internalAtDepth(final int depth) {
+		return new Iterable<Position<MerkleNode>>() {
+			public Iterator<Position<MerkleNode>> iterator() {
+				return new DepthIterator(ArrayMerkleTree.this, depth, true);
+			}
+		};
+	}
+
+	/**
+	 * Tree height
+	 */
+	public int height() {
+		int[] depths = depths();
+		int height = 0;
+		for (int id = 0; id < size; id++)
+			height = Math.max(height, depths[id]);
+		return height;
+	}
+
+	/**
+	 * Tree size
+	 *
+	 * @return number of nodes
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Print the tree nodes
+	 */
+	public void printTree() {
+		System.out.println("------- START -----\n");
+		Iterator<Position<MerkleNode>> iter = preOrder();
+		while (iter.hasNext()) {
+			MerkleNode node = iter.next().element();
+			if (node instanceof ExternalMerkleNode)
+				System.out.println(node.getPath() + " => " + node.getIndex());
+			else
+				System.out.println(node.getPath() + "("
+						+ ((InternalMerkleNode) node).getFlag() + ")");
+		}
+		System.out.println("------- END -------\n");
+	}
+
+	/**
+	 * Build a graphical representation of the tree
+	 *
+	 * @param graph
+	 *            Graph to create
+	 * @return Forest of tree nodes
+	 */
+	public Forest<MerkleNode, String> buildVisualTree(
+			Forest<MerkleNode, String> graph) {
+		graph.addVertex(root);
+		createGraph(ROOT, root, graph);
+		return graph;
+	}
+
+	/**
+	 * Create a graph for a graphical representation of the tree; the node
+	 * objects are built once, so that every vertex is added only once
+	 *
+	 * @param id
+	 *            Current node id
+	 * @param current
+	 *            Current node
+	 * @param graph
+	 *            Graph to create
+	 */
+	private void createGraph(int id, MerkleNode current,
+			Forest<MerkleNode, String> graph) {
+		for (int i = 1; i <= q && childCounts[id] > 0; i++) {
+			int child = child(id, i);
+			if (child == NONE)
+				continue;
+			MerkleNode node = node(child);
+			graph.addEdge(node.getPath(), current, node);
+			createGraph(child, node, graph);
+		}
+	}
+
+	/**
+	 * Store all Merkle Tree information into a file XML; the arrays are
+	 * trimmed to the number of nodes first
+	 *
+	 * @param path
+	 *            The path where the data will be stored
+	 * @param ENCODING
+	 */
+	public void saveToXML(String path, String ENCODING) {
+		parents = Arrays.copyOf(parents, size);
+		indexes = Arrays.copyOf(indexes, size);
+		types = Arrays.copyOf(types, size);
+		flags = Arrays.copyOf(flags, size);
+		commitments = Arrays.copyOf(commitments, size);
+		seeds = Arrays.copyOf(seeds, size);
+		keys = Arrays.copyOf(keys, size);
+		blocks = Arrays.copyOf(blocks, size);
+		childCounts = Arrays.copyOf(childCounts, size);
+		slots = Arrays.copyOf(slots, Math.max(slotCount, q));
+
+		XStream xstream = LinkedMerkleTree.getXStream();
+
+		PrintWriter writer = Utils
+				.getPrintWriter(path, ENCODING, xstream, this);
+		writer.flush();
+		writer.close();
+
+		logger.info("XML file written");
+	}
+
+	/**
+	 * Read the information into the file XML and create an ArrayMerkleTree
+	 *
+	 * @param path
+	 *            The path where the data are stored
+	 * @throws FileNotFoundException
+	 *             File not found
+	 */
+	public static ArrayMerkleTree loadFromXML(String path)
+			throws FileNotFoundException {
+		XStream xstream = LinkedMerkleTree.getXStream();
+		XppReader xmlReader = new XppReader(new FileReader(path));
+
+		return (ArrayMerkleTree) xstream.unmarshal(xmlReader);
+	}
+
+}
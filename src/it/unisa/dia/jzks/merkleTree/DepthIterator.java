@@ -0,0 +1,108 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.merkleTree;
+
+import it.unisa.dia.lasd.position.Position;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy visit of the nodes at a depth of a Merkle tree, from left to right:
+ * the tree is visited in depth first order down to that depth, so the
+ * iterator needs memory proportional to the depth instead of the level width.
+ * Visiting the depths one after the other gives a level order visit.
+ */
+class DepthIterator implements Iterator<Position<MerkleNode>> {
+
+	/**
+	 * The tree
+	 */
+	private MerkleTree tree;
+
+	/**
+	 * Depth of the nodes to return
+	 */
+	private int depth;
+
+	/**
+	 * true to visit only the internal nodes
+	 */
+	private boolean internal;
+
+	/**
+	 * Children still to visit of the nodes from the root to the current one
+	 */
+	private ArrayList<Iterator<Position<MerkleNode>>> children = new ArrayList<Iterator<Position<MerkleNode>>>();
+
+	/**
+	 * Next node to return
+	 */
+	private Position<MerkleNode> next;
+
+	/**
+	 * Constructor
+	 *
+	 * @param tree
+	 *            The tree to visit
+	 * @param depth
+	 *            Depth of the nodes to return
+	 * @param internal
+	 *            true to visit only the internal nodes
+	 */
+	DepthIterator(MerkleTree tree, int depth, boolean internal) {
+		this.tree = tree;
+		this.depth = depth;
+		this.internal = internal;
+		Position<MerkleNode> root = tree.root();
+		if (depth == 0)
+			next = root;
+		else if (depth > 0) {
+			if (PostOrderIterator.descend(tree, root, internal))
+				children.add(tree.children(root).iterator());
+			next = advance();
+		}
+	}
+
+	/**
+	 * Find the next node at the depth
+	 *
+	 * @return the next node, null at the end of the visit
+	 */
+	private Position<MerkleNode> advance() {
+		while (!children.isEmpty()) {
+			Iterator<Position<MerkleNode>> iter = children.get(children
+					.size() - 1);
+			if (!iter.hasNext()) {
+				children.remove(children.size() - 1);
+				continue;
+			}
+			Position<MerkleNode> node = iter.next();
+			if (children.size() == depth)
+				return node;
+			if (PostOrderIterator.descend(tree, node, internal))
+				children.add(tree.children(node).iterator());
+		}
+		return null;
+	}
+
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	public Position<MerkleNode> next() {
+		if (next == null)
+			throw new NoSuchElementException();
+		Position<MerkleNode> current = next;
+		next = (depth == 0) ? null : advance();
+		return current;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
@@ -0,0 +1,173 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.merkleTree;
+
+import java.math.BigInteger;
+
+/**
+ * Path of a key in the Merkle tree: the bits of the key hash, read from the
+ * most significant bit of the first byte. The child indexes are read straight
+ * from the bytes, so the path has the fixed length of the digest and it does
+ * not depend on the sign or the leading zeros of the hash.
+ */
+public final class KeyPath implements Comparable<KeyPath> {
+
+	/**
+	 * Path bytes
+	 */
+	private final byte[] bytes;
+
+	/**
+	 * Index of the first path bit into the bytes
+	 */
+	private final int start;
+
+	/**
+	 * Number of bits
+	 */
+	private final int length;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bytes
+	 *            Path bytes
+	 * @param start
+	 *            Index of the first path bit into the bytes
+	 * @param length
+	 *            Number of bits
+	 */
+	private KeyPath(byte[] bytes, int start, int length) {
+		this.bytes = bytes;
+		this.start = start;
+		this.length = length;
+	}
+
+	/**
+	 * Path of a key hash: all the bits of the digest
+	 *
+	 * @param keyHash
+	 *            Key hash
+	 * @return the key path
+	 */
+	public static KeyPath fromDigest(byte[] keyHash) {
+		return new KeyPath(keyHash, 0, keyHash.length * 8);
+	}
+
+	/**
+	 * Path of a key hash as built by the first releases: the binary string of
+	 * the absolute value of the hash read as a signed number, without the
+	 * leading zeros. It is needed to walk the trees built with those releases
+	 *
+	 * @param keyHash
+	 *            Key hash
+	 * @return the key path
+	 */
+	public static KeyPath legacy(byte[] keyHash) {
+		BigInteger value = new BigInteger(keyHash).abs();
+		byte[] magnitude = value.toByteArray();
+		// the binary string of zero is "0"
+		int length = Math.max(value.bitLength(), 1);
+		return new KeyPath(magnitude, magnitude.length * 8 - length, length);
+	}
+
+	/**
+	 * Path from a binary string
+	 *
+	 * @param path
+	 *            String of 0 and 1
+	 * @return the key path
+	 * @throws NumberFormatException
+	 *             the string is not a binary string
+	 */
+	public static KeyPath fromBinaryString(String path) {
+		byte[] bytes = new byte[(path.length() + 7) / 8];
+		for (int i = 0; i < path.length(); i++) {
+			char bit = path.charAt(i);
+			if (bit == '1')
+				bytes[i >>> 3] |= 0x80 >>> (i & 7);
+			else if (bit != '0')
+				throw new NumberFormatException("Invalid path: " + path);
+		}
+		return new KeyPath(bytes, 0, path.length());
+	}
+
+	/**
+	 * Get the number of bits of the path
+	 *
+	 * @return the path length
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Read a piece of the path
+	 *
+	 * @param cursor
+	 *            Index of the first bit of the piece
+	 * @param count
+	 *            Number of bits of the piece (at most 31)
+	 * @return the piece as an unsigned number
+	 */
+	public int chunk(int cursor, int count) {
+		if ((cursor < 0) || (count < 0) || (count > 31)
+				|| (cursor + count > length))
+			throw new IndexOutOfBoundsException("Bits " + cursor + "-"
+					+ (cursor + count) + " of " + length);
+		int value = 0;
+		int bit = start + cursor;
+		int end = bit + count;
+		while (bit < end) {
+			int offset = bit & 7;
+			int taken = Math.min(8 - offset, end - bit);
+			int b = (bytes[bit >>> 3] & 0xFF) >>> (8 - offset - taken);
+			value = (value << taken) | (b & ((1 << taken) - 1));
+			bit += taken;
+		}
+		return value;
+	}
+
+	/**
+	 * Index of the child selected by a piece of the path
+	 *
+	 * @param cursor
+	 *            Index of the first bit of the piece
+	 * @param bitNode
+	 *            Number of path bits used per node
+	 * @return Child index (from 1 to q)
+	 */
+	public int index(int cursor, int bitNode) {
+		return chunk(cursor, bitNode) + 1;
+	}
+
+	/**
+	 * Compare two paths bit by bit, so the keys sorted by path are sorted as
+	 * the leaves of the tree; a path comes before the longer paths it is a
+	 * prefix of
+	 */
+	public int compareTo(KeyPath other) {
+		int common = Math.min(length, other.length);
+		for (int cursor = 0; cursor < common; cursor += 16) {
+			int count = Math.min(16, common - cursor);
+			int diff = chunk(cursor, count) - other.chunk(cursor, count);
+			if (diff != 0)
+				return diff;
+		}
+		return length - other.length;
+	}
+
+	/**
+	 * Binary string of the path
+	 */
+	@Override
+	public String toString() {
+		StringBuilder path = new StringBuilder(length);
+		for (int i = 0; i < length; i++)
+			path.append((char) ('0' + chunk(i, 1)));
+		return path.toString();
+	}
+
+}
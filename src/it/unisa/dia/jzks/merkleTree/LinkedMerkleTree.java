@@ -18,9 +18,10 @@ import it.unisa.dia.lasd.tree.LinkedTree;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.PrintWriter;
-import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.thoughtworks.xstream.XStream;
@@ -46,8 +47,7 @@ public class LinkedMerkleTree implements MerkleTree {
 	/**
 	 * Logger
 	 */
-	@XStreamOmitField
-	Logger logger = Logger
+	private static final Logger logger = Logger
 			.getLogger("it.unisa.dia.jzks.merkleTree.LinkedMerkleTree");
 
 	/**
@@ -69,6 +69,22 @@ public class LinkedMerkleTree implements MerkleTree {
 	@XStreamAlias("seed")
 	private byte[] baseSeed;
 
+	/**
+	 * Keys mapped to the leaves as in the first releases (see
+	 * {@link KeyPath#legacy(byte[])}); trees saved by the first releases have
+	 * no attribute, so a missing value means legacy
+	 */
+	@XStreamAsAttribute
+	private Boolean legacyKeyPaths = Boolean.FALSE;
+
+	/**
+	 * Children of the internal nodes by index (the child with index i is in
+	 * slot i-1); it is not saved and it is rebuilt from the tree when needed
+	 * (volatile: the proofs read it without locks once it is built)
+	 */
+	@XStreamOmitField
+	private volatile HashMap<Position<MerkleNode>, Position<MerkleNode>[]> childSlots;
+
 	/**
 	 * Number of path bits used per node (it defines tree height)
 	 */
@@ -110,7 +126,7 @@ public class LinkedMerkleTree implements MerkleTree {
 	private RootMerkleNode addRoot() {
 		RootMerkleNode root = new RootMerkleNode();
 		root.setIndex(MerkleNode.ROOT_INDEX);
-		root.setPath(MerkleNode.ROOT_PATH);
+		root.setNodePath(NodePath.ROOT);
 		return root;
 	}
 
@@ -123,10 +139,10 @@ public class LinkedMerkleTree implements MerkleTree {
 	 *            path of new internal Merkle node
 	 * @return the new Merkle node
 	 */
-	public MerkleNode createNode(int index, String path) {
+	public MerkleNode createNode(int index, NodePath path) {
 		InternalMerkleNode mn = new InternalMerkleNode();
 		mn.setIndex(index);
-		mn.setPath(path);
+		mn.setNodePath(path);
 		return mn;
 	}
 
@@ -147,13 +163,13 @@ public class LinkedMerkleTree implements MerkleTree {
 			int cursor) throws InvalidExternalMerkleNodeException,
 			MalformedTreeException {
 
-		String path = new BigInteger(keyHash).abs().toString(2);
-		return insert(node, path, cursor);
+		return insert(node, keyPath(keyHash), cursor);
 
 	}
 
 	/**
-	 * Insert a new node in the Merkle Tree
+	 * Insert a new node in the Merkle Tree following a path given as a
+	 * binary string
 	 * 
 	 * @param node
 	 *            New node to insert
@@ -170,6 +186,42 @@ public class LinkedMerkleTree implements MerkleTree {
 	public Position<MerkleNode> insert(ExternalMerkleNode node,
 			String completePath, int cursor)
 			throws InvalidExternalMerkleNodeException, MalformedTreeException {
+		return insert(node, KeyPath.fromBinaryString(completePath), cursor);
+	}
+
+	/**
+	 * Get the path of a key hash in the tree
+	 * 
+	 * @param keyHash
+	 *            Key hash
+	 * @return the key path
+	 */
+	public KeyPath keyPath(byte[] keyHash) {
+		if (isLegacyKeyPaths())
+			return KeyPath.legacy(keyHash);
+		return KeyPath.fromDigest(keyHash);
+	}
+
+	/**
+	 * Insert a new node in the Merkle Tree. Only the nodes on the node path
+	 * are added: the empty siblings are virtual, their commitments are derived
+	 * from the parent seed when the parent is committed
+	 * 
+	 * @param node
+	 *            New node to insert
+	 * @param path
+	 *            New node key path
+	 * @param cursor
+	 *            Path index
+	 * @return New node position
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid
+	 */
+	public Position<MerkleNode> insert(ExternalMerkleNode node, KeyPath path,
+			int cursor) throws InvalidExternalMerkleNodeException,
+			MalformedTreeException {
 		if ((node == null) || !(node instanceof ExternalMerkleNode))
 			throw new InvalidExternalMerkleNodeException(
 					"The node is not valid");
@@ -177,85 +229,58 @@ public class LinkedMerkleTree implements MerkleTree {
 		logger.finest("bitNode: " + bitNode);
 
 		Position<MerkleNode> parent = tree.root();
-		StringBuffer localKey = new StringBuffer();
-		localKey.append(MerkleNode.ROOT_PATH);
-		localKey.append(completePath.substring(cursor, cursor + bitNode));
-
-		String stringLocalKey;
-		StringBuffer log = new StringBuffer();
+		NodePath localPath = NodePath.ROOT;
 
 		MalformedTreeException treeNotValid = new MalformedTreeException(
 				"Tree not valid.");
 
-		while ((cursor + bitNode + bitNode) <= completePath.length()) {
-			stringLocalKey = localKey.toString();
-			log.delete(0, log.length());
-			log.append("INSERT (");
-			log.append(stringLocalKey);
-			log.append("): ");
-			log.append(completePath.substring(0, cursor));
-			log.append("(");
-			log.append(completePath.substring(cursor, cursor + bitNode));
-			log.append(")");
-			log.append(completePath.substring(cursor + bitNode));
-			logger.finer(log.toString());
-			Position<MerkleNode> newParent = null;
-			if (tree.numberOfChild(parent) == 0)
-				newParent = addChildren(parent, stringLocalKey, bitNode);
-			else if (tree.numberOfChild(parent) == q)
-				newParent = findChild(parent, stringLocalKey);
-			else
-				throw treeNotValid;
-
-			if (newParent == null)
+		while ((cursor + bitNode + bitNode) <= path.length()) {
+			int index = path.index(cursor, bitNode);
+			localPath = localPath.child(index, bitNode);
+			if (logger.isLoggable(Level.FINER)) {
+				StringBuffer log = new StringBuffer();
+				log.append("INSERT (");
+				log.append(localPath.render());
+				log.append("): ");
+				String bits = path.toString();
+				log.append(bits.substring(0, cursor));
+				log.append("(");
+				log.append(bits.substring(cursor, cursor + bitNode));
+				log.append(")");
+				log.append(bits.substring(cursor + bitNode));
+				logger.finer(log.toString());
+			}
+			Position<MerkleNode> newParent = findChild(parent, index);
+			if (newParent == null) {
+				if (hasLeaves(parent))
+					throw treeNotValid;
+				newParent = addChild(parent, createNode(index, localPath));
+			} else if (!(newParent.element() instanceof InternalMerkleNode))
 				throw treeNotValid;
 
 			parent = newParent;
 			cursor += bitNode;
-			localKey.append(completePath.substring(cursor, cursor + bitNode));
 		}
 		Position<MerkleNode> newNode = null;
-		stringLocalKey = localKey.toString();
-		String stringPath;
-		StringBuffer path = new StringBuffer();
-		if (tree.numberOfChild(parent) == 0)
-			for (int i = 0; i < q; i++) {
-				stringPath = indexToPath(i, path, parent.element().getPath());
-				if (stringPath.equals(stringLocalKey)) {
-					logger.finer("0 - Leaf Full - " + stringPath);
-					node.setIndex(i + 1);
-					node.setPath(stringPath);
-					newNode = tree.add(parent, node);
-				} else {
-					logger.finer("0 - Leaf Empty - " + stringPath);
-					ExternalMerkleNode empty = new ExternalMerkleNode();
-					empty.setKey(MerkleNode.EMPTY_KEY);
-					empty.setIndex(i + 1);
-					empty.setPath(stringPath);
-					tree.add(parent, empty);
-				}
-			}
-		else if (tree.numberOfChild(parent) == q) {
-			Iterator<Position<MerkleNode>> children = tree.children(parent)
-					.iterator();
-			int i = 0;
-			while (children.hasNext()) {
-				Position<MerkleNode> current = children.next();
-				stringPath = indexToPath(i, path, parent.element().getPath());
-				if (stringPath.equals(stringLocalKey)) {
-					logger.finer("q - Leaf Replace - " + stringPath);
-					node.setIndex(i + 1);
-					node.setPath(stringPath);
-					if (((ExternalMerkleNode) current.element()).getKey()
-							.equals(MerkleNode.EMPTY_KEY))
-						tree.replace(current, node);
-					else
-						throw new MalformedTreeException("Conflict.");
-					newNode = current;
-					break;
-				}
-				i++;
-			}
+		node.setIndex(path.index(cursor, bitNode));
+		node.setNodePath(localPath.child(node.getIndex(), bitNode));
+
+		Position<MerkleNode> current = findChild(parent, node.getIndex());
+		if (current == null) {
+			if (tree.numberOfChild(parent) > 0 && !hasLeaves(parent))
+				throw treeNotValid;
+			if (logger.isLoggable(Level.FINER))
+				logger.finer("Leaf Add - " + node.getNodePath());
+			newNode = addChild(parent, node);
+		} else if (current.element() instanceof ExternalMerkleNode) {
+			if (logger.isLoggable(Level.FINER))
+				logger.finer("Leaf Replace - " + node.getNodePath());
+			if (((ExternalMerkleNode) current.element()).getKey().equals(
+					MerkleNode.EMPTY_KEY))
+				tree.replace(current, node);
+			else
+				throw new MalformedTreeException("Conflict.");
+			newNode = current;
 		} else
 			throw treeNotValid;
 
@@ -263,67 +288,44 @@ public class LinkedMerkleTree implements MerkleTree {
 	}
 
 	/**
-	 * Build the path String from a node index and his parent path
+	 * Index of the child selected by a piece of a path
 	 * 
-	 * @param index
-	 *            Node index
-	 * @param path
-	 *            StringBuffer to build the path
-	 * @param ParPath
-	 *            Parent node path
-	 * @return Path string of node with index "index"
-	 */
-	private String indexToPath(int index, StringBuffer path, String ParPath) {
-		path.delete(0, path.length());
-		path.append(BigInteger.valueOf(index).abs().toString(2));
-		int l = path.length();
-		for (int j = 0; j < (bitNode - l); j++)
-			path.insert(0, "0");
-		path.insert(0, ParPath);
-		return path.toString();
+	 * @param completePath
+	 *            The path
+	 * @param cursor
+	 *            Path index of the child piece
+	 * @return Child index (from 1 to q)
+	 */
+	private int pathToIndex(String completePath, int cursor) {
+		int index = 0;
+		for (int j = cursor; j < cursor + bitNode; j++) {
+			char bit = completePath.charAt(j);
+			if ((bit != '0') && (bit != '1'))
+				throw new NumberFormatException("Invalid path: "
+						+ completePath);
+			index = (index << 1) | (bit - '0');
+		}
+		return index + 1;
 	}
 
 	/**
-	 * Add children to a node
+	 * Check if the children of a node are leaves
 	 * 
 	 * @param parent
 	 *            Parent node
-	 * @param localKey
-	 *            Key to follow to obtain the path
-	 * @param log
-	 *            Node key length (log_2 q)
-	 * @return The new parent with new children
-	 */
-	private Position<MerkleNode> addChildren(Position<MerkleNode> parent,
-			String localKey, int log) {
-		Position<MerkleNode> newParent = null;
-		StringBuffer path = new StringBuffer();
-		String stringPath;
-
-		// if we want to implement an arbitrary tree height, we need to modify
-		// this method:
-		// here the node path is built by the index, and we add exactly q nodes
-		// when we need to create the first one
-		// if the path length is different from the index length we are not able
-		// to build all the possible nodes:
-		// path length 8 with q=16 (path length 4) we create: 00000000,
-		// 00000001, 00000010,...,00001111
-		// so in this condition it's not possible to implement an arbitrary tree
-		// height
-		// it's needed modify the tree building process!! (e na parola!)
-		for (int i = 0; i < q; i++) {
-			stringPath = indexToPath(i, path, parent.element().getPath());
-			InternalMerkleNode newnode = (InternalMerkleNode) createNode(i + 1,
-					stringPath);
-			Position<MerkleNode> newNodePos = tree.add(parent, newnode);
-			if (path.toString().equals(localKey))
-				newParent = newNodePos;
-		}
-		return newParent;
+	 * @return true if the node has at least a child and its children are
+	 *         leaves
+	 */
+	public boolean hasLeaves(Position<MerkleNode> parent) {
+		if (tree.numberOfChild(parent) == 0)
+			return false;
+		MerkleNode child = tree.children(parent).iterator().next().element();
+		return child instanceof ExternalMerkleNode;
 	}
 
 	/**
-	 * Find a child of a node
+	 * Find a child of a node: the child index is read from the last piece of
+	 * the key
 	 * 
 	 * @param parent
 	 *            Parent node
@@ -333,18 +335,101 @@ public class LinkedMerkleTree implements MerkleTree {
 	 */
 	public Position<MerkleNode> findChild(Position<MerkleNode> parent,
 			String localKey) {
-		Iterator<Position<MerkleNode>> iter = null;
+		if (localKey.length() < bitNode)
+			return null;
 		try {
-			iter = tree.children(parent).iterator();
-		} catch (InvalidPositionException e) {
+			return findChild(parent, pathToIndex(localKey, localKey.length()
+					- bitNode));
+		} catch (NumberFormatException e) {
 			return null;
 		}
-		while (iter.hasNext()) {
-			Position<MerkleNode> current = iter.next();
-			if (current.element().getPath().equals(localKey))
-				return current;
+	}
+
+	/**
+	 * Find a child of a node by its index
+	 * 
+	 * @param parent
+	 *            Parent node
+	 * @param index
+	 *            Child index (from 1 to q)
+	 * @return Child node with the given index, null if it is not in the tree
+	 */
+	public Position<MerkleNode> findChild(Position<MerkleNode> parent,
+			int index) {
+		if ((index < 1) || (index > q))
+			return null;
+		Position<MerkleNode>[] slots = childSlots().get(parent);
+		if (slots == null)
+			return null;
+		return slots[index - 1];
+	}
+
+	/**
+	 * Add a child to a node and put it into the parent slots
+	 * 
+	 * @param parent
+	 *            Parent node
+	 * @param node
+	 *            New child, its index must be set
+	 * @return New child position
+	 */
+	private Position<MerkleNode> addChild(Position<MerkleNode> parent,
+			MerkleNode node) {
+		HashMap<Position<MerkleNode>, Position<MerkleNode>[]> children = childSlots();
+		Position<MerkleNode> child = tree.add(parent, node);
+		Position<MerkleNode>[] slots = children.get(parent);
+		if (slots == null) {
+			slots = newSlots();
+			children.put(parent, slots);
+		}
+		slots[node.getIndex() - 1] = child;
+		return child;
+	}
+
+	/**
+	 * Create the children slots of a node
+	 * 
+	 * @return q empty slots
+	 */
+	@SuppressWarnings("unchecked")
+	private Position<MerkleNode>[] newSlots() {
+		// arrays of a generic type cannot be created: the slots only hold
+		// positions of the tree, so the cast is safe
+		return (Position<MerkleNode>[]) new Position<?>[q];
+	}
+
+	/**
+	 * Get the children slots, indexing the tree if they are missing (e.g. the
+	 * tree has been loaded from XML); once they are built no lock is taken
+	 * 
+	 * @return the children slots of the internal nodes
+	 */
+	private HashMap<Position<MerkleNode>, Position<MerkleNode>[]> childSlots() {
+		HashMap<Position<MerkleNode>, Position<MerkleNode>[]> slotsByNode = childSlots;
+		if (slotsByNode != null)
+			return slotsByNode;
+
+		synchronized (this) {
+			if (childSlots == null) {
+				slotsByNode = new HashMap<Position<MerkleNode>, Position<MerkleNode>[]>();
+				Iterator<Position<MerkleNode>> iter = tree.preorder();
+				while (iter.hasNext()) {
+					Position<MerkleNode> nodePos = iter.next();
+					if (tree.isRoot(nodePos))
+						continue;
+					Position<MerkleNode> parent = tree.parent(nodePos);
+					Position<MerkleNode>[] slots = slotsByNode.get(parent);
+					if (slots == null) {
+						slots = newSlots();
+						slotsByNode.put(parent, slots);
+					}
+					slots[nodePos.element().getIndex() - 1] = nodePos;
+				}
+				// published only when it is complete
+				childSlots = slotsByNode;
+			}
+			return childSlots;
 		}
-		return null;
 	}
 
 	/**
@@ -396,6 +481,7 @@ public class LinkedMerkleTree implements MerkleTree {
 		if ((q > 1) && ((q & (q - 1)) == 0)) {
 			this.q = q;
 			bitNode = ((Double) (Math.log(q) / Math.log(2))).intValue();
+			childSlots = null;
 		} else
 			throw new InvalidQParameterException(
 					"The parameter q must be > 1 and power of 2");
@@ -407,14 +493,7 @@ public class LinkedMerkleTree implements MerkleTree {
 	 * @return Internal nodes iterator
 	 */
 	public Iterator<Position<MerkleNode>> postOrderInternal() {
-		ArrayList<Position<MerkleNode>> list = new ArrayList<Position<MerkleNode>>();
-		Iterator<Position<MerkleNode>> positionIter = tree.postorder();
-		while (positionIter.hasNext()) {
-			Position<MerkleNode> nodePos = positionIter.next();
-			if (nodePos.element() instanceof InternalMerkleNode)
-				list.add(nodePos);
-		}
-		return list.iterator();
+		return new PostOrderIterator(this, true);
 	}
 
 	/**
@@ -503,8 +582,26 @@ public class LinkedMerkleTree implements MerkleTree {
 	 * @param depth
 	 *            Depth of the nodes to return
 	 */
-	public Iterable<Position<MerkleNode>> atDepth(int depth) {
-		return tree.atDepth(depth);
+	public Iterable<Position<MerkleNode>> atDepth(final int depth) {
+		return new Iterable<Position<MerkleNode>>() {
+			public Iterator<Position<MerkleNode>> iterator() {
+				return new DepthIterator(LinkedMerkleTree.this, depth, false);
+			}
+		};
+	}
+
+	/**
+	 * Iterable structure of the internal nodes at a depth
+	 * 
+	 * @param depth
+	 *            Depth of the nodes to return
+	 */
+	public Iterable<Position<MerkleNode>> internalAtDepth(final int depth) {
+		return new Iterable<Position<MerkleNode>>() {
+			public Iterator<Position<MerkleNode>> iterator() {
+				return new DepthIterator(LinkedMerkleTree.this, depth, true);
+			}
+		};
 	}
 
 	/**
@@ -528,10 +625,11 @@ public class LinkedMerkleTree implements MerkleTree {
 	 * 
 	 * @return XStream object
 	 */
-	private static XStream getXStream() {
+	static XStream getXStream() {
 		XStream xstream = new XStream();
 
 		xstream.processAnnotations(LinkedMerkleTree.class);
+		xstream.processAnnotations(ArrayMerkleTree.class);
 		xstream.processAnnotations(Commitment.class);
 
 		xstream.setMode(XStream.ID_REFERENCES);
@@ -604,6 +702,25 @@ public class LinkedMerkleTree implements MerkleTree {
 		return baseSeed;
 	}
 
+	/**
+	 * Check if the keys are mapped to the leaves as in the first releases
+	 * 
+	 * @return the legacyKeyPaths
+	 */
+	public boolean isLegacyKeyPaths() {
+		return !Boolean.FALSE.equals(legacyKeyPaths);
+	}
+
+	/**
+	 * Set the key mapping: it must be set before populating the tree
+	 * 
+	 * @param legacyKeyPaths
+	 *            true to use the legacy key paths
+	 */
+	public void setLegacyKeyPaths(boolean legacyKeyPaths) {
+		this.legacyKeyPaths = Boolean.valueOf(legacyKeyPaths);
+	}
+
 	/**
 	 * Create a graph for a graphical representation of the tree
 	 * 
@@ -660,7 +777,7 @@ public class LinkedMerkleTree implements MerkleTree {
 	 * @return tree nodes iterator
 	 */
 	public Iterator<Position<MerkleNode>> postOrder() {
-		return tree.postorder();
+		return new PostOrderIterator(this, false);
 	}
 
 }
@@ -47,10 +47,10 @@ public class MerkleNode {
 	private OutputCommit commitment;
 
 	/**
-	 * Path field
+	 * Path field (packed, it is saved in its textual form)
 	 */
 	@XStreamAsAttribute
-	private String path;
+	private NodePath path;
 
 	/**
 	 * Get the index value
@@ -90,13 +90,33 @@ public class MerkleNode {
 		this.commitment = commitment;
 	}
 
+	/**
+	 * Set the path field from its textual form
+	 * 
+	 * @param path
+	 *            the path to set ("root" followed by the path bits)
+	 */
+	public void setPath(String path) {
+		this.path = (path == null) ? null : NodePath.parse(path);
+	}
+
+	/**
+	 * Get the textual form of the path field (it is built at each call)
+	 * 
+	 * @return the path
+	 */
+	public String getPath() {
+		NodePath nodePath = getNodePath();
+		return (nodePath == null) ? null : nodePath.render();
+	}
+
 	/**
 	 * Set the path field
 	 * 
 	 * @param path
 	 *            the path to set
 	 */
-	public void setPath(String path) {
+	public void setNodePath(NodePath path) {
 		this.path = path;
 	}
 
@@ -105,7 +125,7 @@ public class MerkleNode {
 	 * 
 	 * @return the path
 	 */
-	public String getPath() {
+	public NodePath getNodePath() {
 		return path;
 	}
 
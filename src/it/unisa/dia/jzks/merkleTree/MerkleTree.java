@@ -13,8 +13,13 @@ package it.unisa.dia.jzks.merkleTree;
 
 import it.unisa.dia.lasd.position.Position;
 
+import java.util.Iterator;
+
+import edu.uci.ics.jung.graph.Forest;
+
 /**
- * Merkle Tree
+ * Merkle Tree: the operations needed to commit a tree and to prove and update
+ * its keys, whatever the nodes are stored
  */
 public interface MerkleTree {
 
@@ -37,4 +42,281 @@ public interface MerkleTree {
 			int cursor) throws InvalidExternalMerkleNodeException,
 			MalformedTreeException;
 
-}
\ No newline at end of file
+	/**
+	 * Insert a new node in the Merkle Tree
+	 * 
+	 * @param node
+	 *            New node to insert
+	 * @param completePath
+	 *            New node path
+	 * @param cursor
+	 *            Path index
+	 * @return New node position
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid
+	 */
+	public Position<MerkleNode> insert(ExternalMerkleNode node,
+			String completePath, int cursor)
+			throws InvalidExternalMerkleNodeException, MalformedTreeException;
+
+	/**
+	 * Insert a new node in the Merkle Tree
+	 * 
+	 * @param node
+	 *            New node to insert
+	 * @param path
+	 *            New node key path
+	 * @param cursor
+	 *            Path index
+	 * @return New node position
+	 * @throws InvalidExternalMerkleNodeException
+	 *             New node not valid
+	 * @throws MalformedTreeException
+	 *             Tree not valid
+	 */
+	public Position<MerkleNode> insert(ExternalMerkleNode node, KeyPath path,
+			int cursor) throws InvalidExternalMerkleNodeException,
+			MalformedTreeException;
+
+	/**
+	 * Get the path of a key hash in the tree
+	 * 
+	 * @param keyHash
+	 *            Key hash
+	 * @return the key path (legacy or fixed length, see
+	 *         {@link #isLegacyKeyPaths()})
+	 */
+	public KeyPath keyPath(byte[] keyHash);
+
+	/**
+	 * Check if the keys are mapped to the leaves as in the first releases
+	 * (binary string of the absolute value of the hash, see
+	 * {@link KeyPath#legacy(byte[])}); it is true for the trees saved by the
+	 * first releases, which have no key mapping setting
+	 */
+	public boolean isLegacyKeyPaths();
+
+	/**
+	 * Set the key mapping: it must be set before populating the tree, trees
+	 * built by the first releases need legacy key paths
+	 * 
+	 * @param legacyKeyPaths
+	 *            true to use the legacy key paths
+	 */
+	public void setLegacyKeyPaths(boolean legacyKeyPaths);
+
+	/**
+	 * Get the q parameter
+	 */
+	public int getQ();
+
+	/**
+	 * Set the q parameter
+	 */
+	public void setQ(int q) throws InvalidQParameterException;
+
+	/**
+	 * Get the number of path bits used per node
+	 */
+	public int getBitNode();
+
+	/**
+	 * Set the number of path bits used per node
+	 * 
+	 * @param bitNode
+	 *            the bitNode to set
+	 */
+	public void setBitNode(int bitNode);
+
+	/**
+	 * @return the lambda
+	 */
+	public int getLambda();
+
+	/**
+	 * @param lambda
+	 *            the lambda to set
+	 */
+	public void setLambda(int lambda);
+
+	/**
+	 * Get the base seed
+	 */
+	public byte[] getBaseSeed();
+
+	/**
+	 * Set random seed to setup a pseudorandom generator needed to create the
+	 * paths from frontiers nodes to leaves don't belong to the tree
+	 * 
+	 * @param baseSeed
+	 *            the baseSeed to set
+	 */
+	public void setBaseSeed(byte[] baseSeed);
+
+	/**
+	 * Tree root
+	 */
+	public Position<MerkleNode> root();
+
+	/**
+	 * Check if a node is the tree root
+	 * 
+	 * @param node
+	 *            Node to check
+	 * @return Boolean value: true if the node is the tree root, false otherwise
+	 */
+	public boolean isRoot(Position<MerkleNode> node);
+
+	/**
+	 * Parent of a node
+	 * 
+	 * @param node
+	 *            Child node
+	 * @return Parent node, null for the root
+	 */
+	public Position<MerkleNode> parent(Position<MerkleNode> node);
+
+	/**
+	 * Internal node children
+	 * 
+	 * @param node
+	 *            Parent node
+	 * @return Iterable structure of parent node children
+	 */
+	public Iterable<Position<MerkleNode>> children(Position<MerkleNode> node);
+
+	/**
+	 * Number of children of a node
+	 * 
+	 * @param node
+	 *            Parent node
+	 * @return Number of children
+	 */
+	public int numberOfChildren(Position<MerkleNode> node);
+
+	/**
+	 * Check if the children of a node are leaves
+	 * 
+	 * @param parent
+	 *            Parent node
+	 * @return true if the node has at least a child and its children are
+	 *         leaves
+	 */
+	public boolean hasLeaves(Position<MerkleNode> parent);
+
+	/**
+	 * Find a child of a node
+	 * 
+	 * @param parent
+	 *            Parent node
+	 * @param localKey
+	 *            Key to follow to obtain the path
+	 * @return Child node with localkey as path
+	 */
+	public Position<MerkleNode> findChild(Position<MerkleNode> parent,
+			String localKey);
+
+	/**
+	 * Find a child of a node by its index
+	 * 
+	 * @param parent
+	 *            Parent node
+	 * @param index
+	 *            Child index (from 1 to q)
+	 * @return Child node with the given index, null if it is not in the tree
+	 */
+	public Position<MerkleNode> findChild(Position<MerkleNode> parent,
+			int index);
+
+	/**
+	 * Replace the node position with a new node
+	 * 
+	 * @param nodePos
+	 *            Node position to replace
+	 * @param node
+	 *            New node
+	 * @return Node replaced
+	 */
+	public MerkleNode replace(Position<MerkleNode> nodePos, MerkleNode node);
+
+	/**
+	 * Visit the tree in post order way; the nodes are found while iterating,
+	 * using memory proportional to the tree height
+	 * 
+	 * @return Internal nodes iterator
+	 */
+	public Iterator<Position<MerkleNode>> postOrderInternal();
+
+	/**
+	 * Post order visit; the nodes are found while iterating, using memory
+	 * proportional to the tree height
+	 * 
+	 * @return tree nodes iterator
+	 */
+	public Iterator<Position<MerkleNode>> postOrder();
+
+	/**
+	 * Preorder visit of the tree
+	 * 
+	 * @return Iterator of all nodes
+	 */
+	public Iterator<Position<MerkleNode>> preOrder();
+
+	/**
+	 * Iterable structure of all nodes at a depth; the nodes are found while
+	 * iterating, using memory proportional to the depth
+	 * 
+	 * @param depth
+	 *            Depth of the nodes to return
+	 */
+	public Iterable<Position<MerkleNode>> atDepth(int depth);
+
+	/**
+	 * Iterable structure of the internal nodes at a depth (visiting the depths
+	 * one after the other gives a level order visit); the nodes are found
+	 * while iterating, using memory proportional to the depth
+	 * 
+	 * @param depth
+	 *            Depth of the nodes to return
+	 */
+	public Iterable<Position<MerkleNode>> internalAtDepth(int depth);
+
+	/**
+	 * Tree height
+	 */
+	public int height();
+
+	/**
+	 * Tree size
+	 * 
+	 * @return number of nodes
+	 */
+	public int size();
+
+	/**
+	 * Print the tree nodes
+	 */
+	public void printTree();
+
+	/**
+	 * Build a graphical representation of the tree
+	 * 
+	 * @param graph
+	 *            Graph to create
+	 * @return Forest of tree nodes
+	 */
+	public Forest<MerkleNode, String> buildVisualTree(
+			Forest<MerkleNode, String> graph);
+
+	/**
+	 * Store all Merkle Tree information into a file XML
+	 * 
+	 * @param path
+	 *            The path where the data will be stored
+	 * @param ENCODING
+	 */
+	public void saveToXML(String path, String ENCODING);
+
+}
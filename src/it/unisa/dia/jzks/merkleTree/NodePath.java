@@ -0,0 +1,186 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.merkleTree;
+
+import java.util.Arrays;
+
+import com.thoughtworks.xstream.annotations.XStreamConverter;
+
+/**
+ * Path of a node from the root: the bits of the child indexes are packed into
+ * an array of longs (the first bit of the path is the most significant bit of
+ * the first long). The textual form ("root" followed by the bits) is built
+ * only when it is asked for.
+ */
+@XStreamConverter(NodePathConverter.class)
+public final class NodePath {
+
+	/**
+	 * Path of the root
+	 */
+	public static final NodePath ROOT = new NodePath(new long[0], 0);
+
+	/**
+	 * Packed bits
+	 */
+	private final long[] bits;
+
+	/**
+	 * Number of bits
+	 */
+	private final int length;
+
+	/**
+	 * Constructor
+	 *
+	 * @param bits
+	 *            Packed bits
+	 * @param length
+	 *            Number of bits
+	 */
+	private NodePath(long[] bits, int length) {
+		this.bits = bits;
+		this.length = length;
+	}
+
+	/**
+	 * Path of a child of this node
+	 *
+	 * @param index
+	 *            Child index (from 1 to q)
+	 * @param bitNode
+	 *            Number of path bits used per node
+	 * @return the child path
+	 */
+	public NodePath child(int index, int bitNode) {
+		int childLength = length + bitNode;
+		long[] childBits = Arrays.copyOf(bits, (childLength + 63) >>> 6);
+		append(childBits, length, index - 1, bitNode);
+		return new NodePath(childBits, childLength);
+	}
+
+	/**
+	 * Build the path of a node from the indexes of the nodes on the way from
+	 * the root
+	 *
+	 * @param indexes
+	 *            Child indexes (from 1 to q), the first is the root child
+	 * @param depth
+	 *            Number of indexes to use
+	 * @param bitNode
+	 *            Number of path bits used per node
+	 * @return the node path
+	 */
+	public static NodePath fromIndexes(int[] indexes, int depth, int bitNode) {
+		int length = depth * bitNode;
+		long[] bits = new long[(length + 63) >>> 6];
+		for (int i = 0; i < depth; i++)
+			append(bits, i * bitNode, indexes[i] - 1, bitNode);
+		return new NodePath(bits, length);
+	}
+
+	/**
+	 * Write a value into the packed bits
+	 *
+	 * @param bits
+	 *            Packed bits
+	 * @param offset
+	 *            Index of the first bit to write
+	 * @param value
+	 *            Value to write
+	 * @param count
+	 *            Number of bits of the value
+	 */
+	private static void append(long[] bits, int offset, int value, int count) {
+		for (int i = 0; i < count; i++)
+			if (((value >>> (count - 1 - i)) & 1) != 0) {
+				int bit = offset + i;
+				bits[bit >>> 6] |= 1L << (63 - (bit & 63));
+			}
+	}
+
+	/**
+	 * Parse the textual form of a path
+	 *
+	 * @param path
+	 *            "root" followed by the path bits
+	 * @return the path
+	 * @throws IllegalArgumentException
+	 *             the string is not a node path
+	 */
+	public static NodePath parse(String path) {
+		if (!path.startsWith(MerkleNode.ROOT_PATH))
+			throw new IllegalArgumentException("Invalid node path: " + path);
+		int start = MerkleNode.ROOT_PATH.length();
+		int length = path.length() - start;
+		long[] bits = new long[(length + 63) >>> 6];
+		for (int i = 0; i < length; i++) {
+			char bit = path.charAt(start + i);
+			if (bit == '1')
+				bits[i >>> 6] |= 1L << (63 - (i & 63));
+			else if (bit != '0')
+				throw new IllegalArgumentException("Invalid node path: "
+						+ path);
+		}
+		return new NodePath(bits, length);
+	}
+
+	/**
+	 * Get the number of bits of the path
+	 *
+	 * @return the path length
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Get a bit of the path
+	 *
+	 * @param i
+	 *            Bit index (from 0)
+	 * @return the bit (0 or 1)
+	 */
+	public int bit(int i) {
+		if ((i < 0) || (i >= length))
+			throw new IndexOutOfBoundsException("Bit " + i + " of " + length);
+		return (int) (bits[i >>> 6] >>> (63 - (i & 63))) & 1;
+	}
+
+	/**
+	 * Render the textual form of the path: "root" followed by the bits
+	 *
+	 * @return the path string
+	 */
+	public String render() {
+		StringBuilder path = new StringBuilder(MerkleNode.ROOT_PATH.length()
+				+ length);
+		path.append(MerkleNode.ROOT_PATH);
+		for (int i = 0; i < length; i++)
+			path.append((char) ('0' + bit(i)));
+		return path.toString();
+	}
+
+	@Override
+	public String toString() {
+		return render();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof NodePath))
+			return false;
+		NodePath other = (NodePath) obj;
+		return (length == other.length) && Arrays.equals(bits, other.bits);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * length + Arrays.hashCode(bits);
+	}
+
+}
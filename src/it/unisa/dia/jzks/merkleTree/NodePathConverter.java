@@ -0,0 +1,30 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.merkleTree;
+
+import com.thoughtworks.xstream.converters.SingleValueConverter;
+
+/**
+ * XStream converter that saves a node path in its textual form, so the xml
+ * files keep the same format of the String paths
+ */
+public class NodePathConverter implements SingleValueConverter {
+
+	// the XStream interface declares a raw Class, so Class<?> would not
+	// override it
+	@SuppressWarnings("rawtypes")
+	public boolean canConvert(Class type) {
+		return type.equals(NodePath.class);
+	}
+
+	public String toString(Object obj) {
+		return ((NodePath) obj).render();
+	}
+
+	public Object fromString(String str) {
+		return NodePath.parse(str);
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.merkleTree;
+
+import it.unisa.dia.lasd.position.Position;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lazy post order visit of a Merkle tree: the iterator keeps only the path
+ * from the root to the current node (with the children still to visit), so it
+ * needs memory proportional to the tree height instead of the tree size
+ */
+class PostOrderIterator implements Iterator<Position<MerkleNode>> {
+
+	/**
+	 * The tree
+	 */
+	private MerkleTree tree;
+
+	/**
+	 * true to visit only the internal nodes
+	 */
+	private boolean internal;
+
+	/**
+	 * Nodes from the root to the current one
+	 */
+	private ArrayList<Position<MerkleNode>> nodes = new ArrayList<Position<MerkleNode>>();
+
+	/**
+	 * Children still to visit of every node on the stack (null if the children
+	 * are not visited)
+	 */
+	private ArrayList<Iterator<Position<MerkleNode>>> children = new ArrayList<Iterator<Position<MerkleNode>>>();
+
+	/**
+	 * Next node to return
+	 */
+	private Position<MerkleNode> next;
+
+	/**
+	 * Constructor
+	 *
+	 * @param tree
+	 *            The tree to visit
+	 * @param internal
+	 *            true to visit only the internal nodes
+	 */
+	PostOrderIterator(MerkleTree tree, boolean internal) {
+		this.tree = tree;
+		this.internal = internal;
+		push(tree.root());
+		next = advance();
+	}
+
+	/**
+	 * Check if the children of a node are to be visited
+	 *
+	 * @param tree
+	 *            The tree
+	 * @param node
+	 *            The node
+	 * @param internal
+	 *            true if only the internal nodes are visited
+	 * @return true if the node has children to visit
+	 */
+	static boolean descend(MerkleTree tree, Position<MerkleNode> node,
+			boolean internal) {
+		if (tree.numberOfChildren(node) == 0)
+			return false;
+		return !(internal && tree.hasLeaves(node));
+	}
+
+	/**
+	 * Put a node on the stack
+	 *
+	 * @param node
+	 *            The node
+	 */
+	private void push(Position<MerkleNode> node) {
+		nodes.add(node);
+		children.add(descend(tree, node, internal) ? tree.children(node)
+				.iterator() : null);
+	}
+
+	/**
+	 * Find the next node in post order
+	 *
+	 * @return the next node, null at the end of the visit
+	 */
+	private Position<MerkleNode> advance() {
+		while (!nodes.isEmpty()) {
+			int top = nodes.size() - 1;
+			Iterator<Position<MerkleNode>> iter = children.get(top);
+			if ((iter != null) && iter.hasNext()) {
+				push(iter.next());
+				continue;
+			}
+			children.remove(top);
+			return nodes.remove(top);
+		}
+		return null;
+	}
+
+	public boolean hasNext() {
+		return next != null;
+	}
+
+	public Position<MerkleNode> next() {
+		if (next == null)
+			throw new NoSuchElementException();
+		Position<MerkleNode> current = next;
+		next = advance();
+		return current;
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+}
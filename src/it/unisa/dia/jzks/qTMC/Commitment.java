@@ -1,520 +1,876 @@
-/**
- * @author Costante Luca (dott.costante@gmail.com)
- * @author Giardino Daniele (dagix5@gmail.com)
- *
- */
-package it.unisa.dia.jzks.qTMC;
-
-import it.unisa.dia.gas.jpbc.Element;
-import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
-import it.unisa.dia.gas.jpbc.Field;
-import it.unisa.dia.gas.jpbc.Pairing;
-
-import java.math.BigInteger;
-import java.util.ArrayList;
-
-import com.thoughtworks.xstream.annotations.XStreamOmitField;
-
-/**
- * Concise Mercurial Vector Commitment implementation
- */
-public class Commitment implements LibertYung_qTMC {
-
-	private Field Zr;
-
-	private Field G;
-
-	private Pairing pairing;
-
-	@XStreamOmitField
-	private ElementPowPreProcessing gp;
-
-	/**
-	 * @return the gp
-	 */
-	public ElementPowPreProcessing getGp() {
-		return gp;
-	}
-
-	/**
-	 * @param gp
-	 *            the gp to set
-	 */
-	public void setGp(ElementPowPreProcessing gp) {
-		this.gp = gp;
-	}
-
-	/**
-	 * Empty Commitment constructor; you need to set the G and Zr fields with
-	 * the "set" methods
-	 */
-	public Commitment() {
-	}
-
-	/**
-	 * Commitment constructor
-	 * 
-	 * @param G
-	 *            The G field
-	 * @param Zr
-	 *            The Zr field
-	 */
-	public Commitment(Field G, Field Zr) {
-		this.Zr = Zr;
-		this.G = G;
-	}
-
-	/**
-	 * Commitment constructor
-	 * 
-	 * @param G
-	 *            The G field
-	 * @param Zr
-	 *            The Zr field
-	 * @param pairing
-	 *            Pairing object for Paring-Based operations
-	 */
-	public Commitment(Field G, Field Zr, Pairing pairing) {
-		this.Zr = Zr;
-		this.G = G;
-		this.pairing = pairing;
-	}
-
-	/**
-	 * Get the Zr field
-	 */
-	public Field getZr() {
-		return Zr;
-	}
-
-	/**
-	 * Set the Zr field
-	 * 
-	 * @param zr
-	 */
-	public void setZr(Field zr) {
-		Zr = zr;
-	}
-
-	/**
-	 * Get the G field
-	 */
-	public Field getG() {
-		return G;
-	}
-
-	/**
-	 * Set the field G
-	 * 
-	 * @param g
-	 *            field G
-	 */
-	public void setG(Field g) {
-		G = g;
-	}
-
-	/**
-	 * Get the Pairing object for Pairing-Based operations
-	 */
-	public Pairing getPairing() {
-		return pairing;
-	}
-
-	/**
-	 * Set the Pairing object for Pairing-Based operations
-	 * 
-	 * @param pairing
-	 *            Pairing object
-	 */
-	public void setPairing(Pairing pairing) {
-		this.pairing = pairing;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see commitment.LibertYung_qTMC#qKeygen(int, int)
-	 */
-	public CommitmentKeys qKeygen(int q) {
-		CommitmentKeys commkey = new CommitmentKeys();
-		Element g = G.newRandomElement();
-		Element alpha = Zr.newRandomElement();
-
-		gp = g.pow();
-		ElementPowPreProcessing alphap = alpha.pow();
-
-		ArrayList<Element> key = new ArrayList<Element>();
-		key.add(0, g);
-		for (int i = 1; i <= (2 * q); i++) {
-			Element iZ = Zr.newElement();
-			iZ.set(i);
-			Element ai = alphap.powZn(iZ);
-			Element gi = gp.powZn(ai);
-			if (i == (q + 1)) {
-				commkey.setTk(gi);
-				key.add(i, G.newZeroElement().setToZero());
-			} else {
-				key.add(i, gi);
-			}
-		}
-		commkey.setPk(key);
-		return commkey;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qHCom(java.util.ArrayList,
-	 * java.util.ArrayList)
-	 */
-	public OutputCommit qHCom(ArrayList<Element> Pk, ArrayList<Element> messages) {
-		OutputCommit ohc = new OutputCommit();
-
-		Element gamma = Zr.newRandomElement();
-		Element teta = Zr.newRandomElement();
-
-		Element C = gp.powZn(teta);
-
-		ohc.setC(C);
-
-		Element V = gp.powZn(gamma);
-
-		int q = messages.size() - 1;
-		for (int j = 1; j <= q; j++) {
-			Element current = Pk.get(q + 1 - j).duplicate().powZn(
-					messages.get(j));
-			V.mul(current);
-		}
-		ohc.setV(V);
-
-		ArrayList<Element> aux = new ArrayList<Element>();
-		for (int i = 0; i < messages.size(); i++)
-			aux.add(messages.get(i));
-		aux.add(q + 1, gamma);
-		aux.add(q + 2, teta);
-		ohc.setAux(aux);
-
-		return ohc;
-	}
-
-	/**
-	 * Takes as input an ordered tuple of messages. It outputs a hard commitment
-	 * C to (m1,...,mq) under the public key pk and some auxiliary state
-	 * information aux.
-	 * 
-	 * @param Pk
-	 *            public key
-	 * @param messages
-	 *            the q messages
-	 * @param g
-	 *            gamma (pseudorandom number)
-	 * @param t
-	 *            teta (pseudorandom number)
-	 * @return OutputCommit that contains C, V, aux= (m1,...,mq, GAMMA, TETA)
-	 * 
-	 * @see it.unisa.dia.jzks.qTMC.LibertYung_qTMC#qHCom(java.util.ArrayList,
-	 *      java.util.ArrayList)
-	 */
-	public OutputCommit qHComPr(ArrayList<Element> Pk,
-			ArrayList<Element> messages, BigInteger g, BigInteger t) {
-		OutputCommit ohc = new OutputCommit();
-
-		Element gamma = Zr.newElement();
-		gamma.set(g);
-		Element teta = Zr.newElement();
-		teta.set(t);
-
-		Element C = gp.powZn(teta);
-
-		ohc.setC(C);
-
-		Element V = gp.powZn(gamma);
-
-		int q = messages.size() - 1;
-		for (int j = 1; j <= q; j++) {
-			Element current = Pk.get(q + 1 - j).duplicate().powZn(
-					messages.get(j));
-			V.mul(current);
-		}
-		ohc.setV(V);
-
-		ArrayList<Element> aux = new ArrayList<Element>();
-		for (int i = 0; i < messages.size(); i++)
-			aux.add(messages.get(i));
-		aux.add(q + 1, gamma);
-		aux.add(q + 2, teta);
-		ohc.setAux(aux);
-
-		return ohc;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qSCom(java.util.ArrayList)
-	 */
-	public OutputCommit qSCom(ArrayList<Element> Pk) {
-		OutputCommit osc = new OutputCommit();
-
-		Element gamma = Zr.newRandomElement();
-		Element teta = Zr.newRandomElement();
-		Element g1 = Pk.get(1);
-
-		ElementPowPreProcessing g1p = g1.pow();
-
-		Element C = g1p.powZn(teta);
-		osc.setC(C);
-
-		Element V = g1p.powZn(gamma);
-		osc.setV(V);
-
-		ArrayList<Element> aux = new ArrayList<Element>();
-		aux.add(0, teta);
-		aux.add(1, gamma);
-		osc.setAux(aux);
-		return osc;
-	}
-
-	/**
-	 * It is a probabilistic algorithm that generates a soft commitment and some
-	 * auxiliary information aux. Such a commitment is not associated with a
-	 * specific sequence of messages.
-	 * 
-	 * @param Pk
-	 *            public key
-	 * @param g
-	 *            gamma (pseudorandom number)
-	 * @param t
-	 *            teta (pseudorandom number)
-	 * @return OutputCommit that contains C, V, aux=(TETA, GAMMA)
-	 * 
-	 * @see it.unisa.dia.jzks.qTMC.LibertYung_qTMC#qSCom(java.util.ArrayList)
-	 */
-	public OutputCommit qSComPr(ArrayList<Element> Pk, BigInteger g,
-			BigInteger t) {
-		OutputCommit osc = new OutputCommit();
-
-		Element gamma = Zr.newElement();
-		gamma.set(g);
-		Element teta = Zr.newElement();
-		teta.set(t);
-
-		Element g1 = Pk.get(1);
-
-		ElementPowPreProcessing g1p = g1.pow();
-
-		Element C = g1p.powZn(teta);
-		osc.setC(C);
-
-		Element V = g1p.powZn(gamma);
-		osc.setV(V);
-
-		ArrayList<Element> aux = new ArrayList<Element>();
-		aux.add(0, teta);
-		aux.add(1, gamma);
-		osc.setAux(aux);
-		return osc;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qFake(java.util.ArrayList,
-	 * it.unisa.dia.gas.jpbc.Element)
-	 */
-	public OutputCommit qFake(ArrayList<Element> Pk, Element tk) {
-		OutputCommit ofc = new OutputCommit();
-
-		Element gamma = Zr.newRandomElement();
-		Element teta = Zr.newRandomElement();
-		Element C = gp.powZn(teta);
-		ofc.setC(C);
-
-		Element V = gp.powZn(gamma);
-		ofc.setV(V);
-
-		ArrayList<Element> aux = new ArrayList<Element>();
-		aux.add(0, teta);
-		aux.add(1, gamma);
-		ofc.setAux(aux);
-		return ofc;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qHOpen(java.util.ArrayList,
-	 * it.unisa.dia.gas.jpbc.Element, int, java.util.ArrayList)
-	 */
-	public Element[] qHOpen(ArrayList<Element> PK, Element mi, int i,
-			ArrayList<Element> aux) throws MessageMismatchException {
-		Element[] piGreek = new Element[2];
-		Element gamma = aux.get(aux.size() - 2);
-		Element teta = aux.get(aux.size() - 1);
-
-		if (aux.contains(mi) && (!aux.get(i).equals(mi)))
-			throw new MessageMismatchException(
-					"The message in mi parameter is not the same of aux[i]");
-
-		Element Wi = PK.get(i).duplicate().powZn(gamma);
-
-		int q = aux.size() - 3;
-		for (int j = 1; j <= q; j++) {
-			if (j != i) {
-				Element cur = PK.get(q + 1 - j + i).duplicate().powZn(
-						aux.get(j));
-				Wi.mul(cur);
-			}
-		}
-		Wi.powZn(teta.duplicate().invert());
-		piGreek[0] = teta;
-		piGreek[1] = Wi;
-		return piGreek;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qSOpen(java.util.ArrayList,
-	 * it.unisa.dia.gas.jpbc.Element, int, boolean, java.util.ArrayList)
-	 */
-	public Element qSOpen(ArrayList<Element> PK, Element message, int i,
-			int flag, ArrayList<Element> aux) {
-		Element tau = null;
-
-		Element gamma;
-		Element teta;
-
-		if (flag == LibertYung_qTMC.SOFT_COMMITMENT) {// soft commit
-			teta = aux.get(0);
-			gamma = aux.get(1);
-			int q = (int) PK.size() / 2;
-			Element WiA = PK.get(i).duplicate().powZn(gamma);
-			Element WiB = PK.get(q).duplicate().powZn(
-					message.duplicate().negate());
-			WiA.mul(WiB);
-			WiA.powZn(teta.duplicate().invert());
-			tau = WiA;
-		} else if (flag == LibertYung_qTMC.HARD_COMMITMENT) {// hard commit
-			Element mi = aux.get(i);
-			if (!mi.isEqual(message))
-				return tau = PERPENDICULAR;
-			gamma = aux.get(aux.size() - 2);
-			teta = aux.get(aux.size() - 1);
-			Element Wi = PK.get(i).duplicate().powZn(gamma);
-			int q = aux.size() - 3;
-			for (int j = 1; j <= q; j++) {
-				if (j != i) {
-					Element cur = PK.get(q + 1 - j + i).duplicate().powZn(
-							aux.get(j));
-					Wi.mul(cur);
-				}
-			}
-			Wi.powZn(teta.duplicate().invert());
-			tau = Wi;
-		}
-
-		return tau;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qHVer(java.util.ArrayList,
-	 * it.unisa.dia.gas.jpbc.Element, int, it.unisa.dia.gas.jpbc.Element,
-	 * it.unisa.dia.gas.jpbc.Element, it.unisa.dia.gas.jpbc.Element[])
-	 */
-	public boolean qHVer(ArrayList<Element> PK, Element mi, int i, Element C,
-			Element V, Element[] piGreek) {
-		Element teta = piGreek[0].duplicate();
-		Element Wi = piGreek[1].duplicate();
-		Element e1 = pairing.pairing(PK.get(i), V);
-		Element e2 = pairing.pairing(C, Wi);
-		int q = (int) PK.size() / 2;
-		Element e2b = pairing.pairing(PK.get(1), PK.get(q)).powZn(mi);
-		e2.mul(e2b);
-
-		if (e1.isEqual(e2) && (C.isEqual(gp.powZn(teta))))
-			return true;
-
-		return false;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qSVer(java.util.ArrayList,
-	 * it.unisa.dia.gas.jpbc.Element, int, it.unisa.dia.gas.jpbc.Element,
-	 * it.unisa.dia.gas.jpbc.Element, it.unisa.dia.gas.jpbc.Element)
-	 */
-	public boolean qSVer(ArrayList<Element> PK, Element mi, int i, Element C,
-			Element V, Element tau) {
-		Element Wi = tau;
-		if (Wi == PERPENDICULAR)
-			return false;
-		Element e1 = pairing.pairing(PK.get(i), V);
-		Element e2a = pairing.pairing(C, Wi);
-		int q = (int) PK.size() / 2;
-		Element e2b = pairing.pairing(PK.get(1).duplicate(),
-				PK.get(q).duplicate()).powZn(mi);
-		Element e2 = e2a.mul(e2b);
-
-		// verifica che C e V appartengono a G !!!!
-		if (!(G.equals(C.getField()) && G.equals(V.getField()))) {
-			return false;
-		}
-
-		if (e1.isEqual(e2)) {
-			return true;
-		}
-
-		return false;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qHEquiv(java.util.ArrayList,
-	 * it.unisa.dia.gas.jpbc.Element, java.util.ArrayList, int,
-	 * java.util.ArrayList)
-	 */
-	public Element[] qHEquiv(ArrayList<Element> pk, Element tk,
-			ArrayList<Element> messages, int i, ArrayList<Element> aux) {
-		Element[] piGreek = new Element[2];
-
-		Element teta = aux.get(0);
-		Element gamma = aux.get(1);
-
-		Element WiA = pk.get(i).duplicate().powZn(gamma);
-		Element WiB = tk.duplicate()
-				.powZn(messages.get(i).duplicate().negate());
-		WiA.mul(WiB);
-		WiA.powZn(teta.duplicate().invert());
-		piGreek[0] = teta;
-		piGreek[1] = WiA;
-		return piGreek;
-	}
-
-	/*
-	 * (non-Javadoc)
-	 * 
-	 * @see libert_yung.LibertYung_qTMC#qSEquiv(java.util.ArrayList,
-	 * it.unisa.dia.gas.jpbc.Element, it.unisa.dia.gas.jpbc.Element, int,
-	 * java.util.ArrayList)
-	 */
-	public Element qSEquiv(ArrayList<Element> pk, Element tk, Element message,
-			int i, ArrayList<Element> aux) {
-
-		Element teta = aux.get(0);
-		Element gamma = aux.get(1);
-		Element WiA = pk.get(i).duplicate().powZn(gamma);
-
-		Element WiB = tk.duplicate().powZn(message.duplicate().negate());
-		WiA = WiA.mul(WiB);
-		WiA = WiA.powZn(teta.duplicate().invert());
-
-		return WiA;
-
-	}
-
-}
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ *
+ */
+package it.unisa.dia.jzks.qTMC;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Field;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.thoughtworks.xstream.annotations.XStreamOmitField;
+
+/**
+ * Concise Mercurial Vector Commitment implementation
+ */
+public class Commitment implements LibertYung_qTMC {
+
+	/**
+	 * Bit length of the random exponents used by batch verification
+	 */
+	public static final int BATCH_EXPONENT_BITS = 64;
+
+	/**
+	 * Random generator for batch verification exponents
+	 */
+	private static final SecureRandom batchRandom = new SecureRandom();
+
+	private Field Zr;
+
+	private Field G;
+
+	private Pairing pairing;
+
+	@XStreamOmitField
+	private ElementPowPreProcessing gp;
+
+	/**
+	 * Precomputation tables of the last public key used
+	 */
+	@XStreamOmitField
+	private PublicKeyPreProcessing pkp;
+
+	/**
+	 * @return the gp
+	 */
+	public ElementPowPreProcessing getGp() {
+		return gp;
+	}
+
+	/**
+	 * @param gp
+	 *            the gp to set
+	 */
+	public void setGp(ElementPowPreProcessing gp) {
+		this.gp = gp;
+	}
+
+	/**
+	 * Get the precomputation tables of a public key; they are built once and
+	 * reused while the same public key is used
+	 * 
+	 * @param Pk
+	 *            public key
+	 * @return the precomputation tables of Pk
+	 */
+	public synchronized PublicKeyPreProcessing getPreProcessing(
+			ArrayList<Element> Pk) {
+		if ((pkp == null) || (pkp.getPk() != Pk))
+			pkp = new PublicKeyPreProcessing(Pk, pairing);
+		return pkp;
+	}
+
+	/**
+	 * Empty Commitment constructor; you need to set the G and Zr fields with
+	 * the "set" methods
+	 */
+	public Commitment() {
+	}
+
+	/**
+	 * Commitment constructor
+	 * 
+	 * @param G
+	 *            The G field
+	 * @param Zr
+	 *            The Zr field
+	 */
+	public Commitment(Field G, Field Zr) {
+		this.Zr = Zr;
+		this.G = G;
+	}
+
+	/**
+	 * Commitment constructor
+	 * 
+	 * @param G
+	 *            The G field
+	 * @param Zr
+	 *            The Zr field
+	 * @param pairing
+	 *            Pairing object for Paring-Based operations
+	 */
+	public Commitment(Field G, Field Zr, Pairing pairing) {
+		this.Zr = Zr;
+		this.G = G;
+		this.pairing = pairing;
+	}
+
+	/**
+	 * Get the Zr field
+	 */
+	public Field getZr() {
+		return Zr;
+	}
+
+	/**
+	 * Set the Zr field
+	 * 
+	 * @param zr
+	 */
+	public void setZr(Field zr) {
+		Zr = zr;
+	}
+
+	/**
+	 * Get the G field
+	 */
+	public Field getG() {
+		return G;
+	}
+
+	/**
+	 * Set the field G
+	 * 
+	 * @param g
+	 *            field G
+	 */
+	public void setG(Field g) {
+		G = g;
+	}
+
+	/**
+	 * Get the Pairing object for Pairing-Based operations
+	 */
+	public Pairing getPairing() {
+		return pairing;
+	}
+
+	/**
+	 * Set the Pairing object for Pairing-Based operations
+	 * 
+	 * @param pairing
+	 *            Pairing object
+	 */
+	public void setPairing(Pairing pairing) {
+		this.pairing = pairing;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see commitment.LibertYung_qTMC#qKeygen(int, int)
+	 */
+	public CommitmentKeys qKeygen(int q) {
+		CommitmentKeys commkey = new CommitmentKeys();
+		Element g = G.newRandomElement();
+		Element alpha = Zr.newRandomElement();
+
+		gp = g.pow();
+		ElementPowPreProcessing alphap = alpha.pow();
+
+		ArrayList<Element> key = new ArrayList<Element>();
+		key.add(0, g);
+		for (int i = 1; i <= (2 * q); i++) {
+			Element iZ = Zr.newElement();
+			iZ.set(i);
+			Element ai = alphap.powZn(iZ);
+			Element gi = gp.powZn(ai);
+			if (i == (q + 1)) {
+				commkey.setTk(gi);
+				key.add(i, G.newZeroElement().setToZero());
+			} else {
+				key.add(i, gi);
+			}
+		}
+		commkey.setPk(key);
+		getPreProcessing(key);
+		return commkey;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qHCom(java.util.ArrayList,
+	 * java.util.ArrayList)
+	 */
+	public OutputCommit qHCom(ArrayList<Element> Pk, ArrayList<Element> messages) {
+		OutputCommit ohc = new OutputCommit();
+
+		Element gamma = Zr.newRandomElement();
+		Element teta = Zr.newRandomElement();
+
+		Element C = gp.powZn(teta);
+
+		ohc.setC(C);
+
+		Element V = gp.powZn(gamma);
+
+		int q = messages.size() - 1;
+		V.mul(vectorPow(Pk, messages, q));
+		ohc.setV(V);
+
+		ArrayList<Element> aux = new ArrayList<Element>();
+		for (int i = 0; i < messages.size(); i++)
+			aux.add(messages.get(i));
+		aux.add(q + 1, gamma);
+		aux.add(q + 2, teta);
+		ohc.setAux(aux);
+
+		return ohc;
+	}
+
+	/**
+	 * Takes as input an ordered tuple of messages. It outputs a hard commitment
+	 * C to (m1,...,mq) under the public key pk and some auxiliary state
+	 * information aux.
+	 * 
+	 * @param Pk
+	 *            public key
+	 * @param messages
+	 *            the q messages
+	 * @param g
+	 *            gamma (pseudorandom number)
+	 * @param t
+	 *            teta (pseudorandom number)
+	 * @return OutputCommit that contains C, V, aux= (m1,...,mq, GAMMA, TETA)
+	 * 
+	 * @see it.unisa.dia.jzks.qTMC.LibertYung_qTMC#qHCom(java.util.ArrayList,
+	 *      java.util.ArrayList)
+	 */
+	public OutputCommit qHComPr(ArrayList<Element> Pk,
+			ArrayList<Element> messages, BigInteger g, BigInteger t) {
+		OutputCommit ohc = new OutputCommit();
+
+		Element gamma = Zr.newElement();
+		gamma.set(g);
+		Element teta = Zr.newElement();
+		teta.set(t);
+
+		Element C = gp.powZn(teta);
+
+		ohc.setC(C);
+
+		Element V = gp.powZn(gamma);
+
+		int q = messages.size() - 1;
+		V.mul(vectorPow(Pk, messages, q));
+		ohc.setV(V);
+
+		ArrayList<Element> aux = new ArrayList<Element>();
+		for (int i = 0; i < messages.size(); i++)
+			aux.add(messages.get(i));
+		aux.add(q + 1, gamma);
+		aux.add(q + 2, teta);
+		ohc.setAux(aux);
+
+		return ohc;
+	}
+
+	/**
+	 * Compute the message part of V: the product of Pk[q+1-j]^mj for j=1..q
+	 * with the public key precomputation tables
+	 * 
+	 * @param Pk
+	 *            public key
+	 * @param messages
+	 *            messages (m1,...,mq) from index 1
+	 * @param q
+	 *            number of messages
+	 * @return product of Pk[q+1-j]^mj
+	 */
+	private Element vectorPow(ArrayList<Element> Pk,
+			ArrayList<Element> messages, int q) {
+		PublicKeyPreProcessing pkp = getPreProcessing(Pk);
+		ElementPowPreProcessing[] bases = new ElementPowPreProcessing[q];
+		Element[] exponents = new Element[q];
+		for (int j = 1; j <= q; j++) {
+			bases[j - 1] = pkp.get(q + 1 - j);
+			exponents[j - 1] = messages.get(j);
+		}
+		return MultiExponentiation.powZn(bases, exponents);
+	}
+
+	/**
+	 * Compute Wi before the 1/TETA exponentiation: Pk[i]^GAMMA times the
+	 * product of Pk[q+1-j+i]^mj for j<>i, with the public key precomputation
+	 * tables
+	 * 
+	 * @param PK
+	 *            public key
+	 * @param gamma
+	 *            GAMMA of the hard commitment
+	 * @param i
+	 *            index of the opened message
+	 * @param aux
+	 *            auxiliary information aux=(m1,...,mq, GAMMA, TETA)
+	 * @return Wi^TETA
+	 */
+	private Element openingPow(ArrayList<Element> PK, Element gamma, int i,
+			ArrayList<Element> aux) {
+		int q = aux.size() - 3;
+		PublicKeyPreProcessing pkp = getPreProcessing(PK);
+		ElementPowPreProcessing[] bases = new ElementPowPreProcessing[q];
+		Element[] exponents = new Element[q];
+		bases[0] = pkp.get(i);
+		exponents[0] = gamma;
+		int k = 1;
+		for (int j = 1; j <= q; j++) {
+			if (j != i) {
+				bases[k] = pkp.get(q + 1 - j + i);
+				exponents[k] = aux.get(j);
+				k++;
+			}
+		}
+		return MultiExponentiation.powZn(bases, exponents);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qSCom(java.util.ArrayList)
+	 */
+	public OutputCommit qSCom(ArrayList<Element> Pk) {
+		OutputCommit osc = new OutputCommit();
+
+		Element gamma = Zr.newRandomElement();
+		Element teta = Zr.newRandomElement();
+		ElementPowPreProcessing g1p = getPreProcessing(Pk).get(1);
+
+		Element C = g1p.powZn(teta);
+		osc.setC(C);
+
+		Element V = g1p.powZn(gamma);
+		osc.setV(V);
+
+		ArrayList<Element> aux = new ArrayList<Element>();
+		aux.add(0, teta);
+		aux.add(1, gamma);
+		osc.setAux(aux);
+		return osc;
+	}
+
+	/**
+	 * It is a probabilistic algorithm that generates a soft commitment and some
+	 * auxiliary information aux. Such a commitment is not associated with a
+	 * specific sequence of messages.
+	 * 
+	 * @param Pk
+	 *            public key
+	 * @param g
+	 *            gamma (pseudorandom number)
+	 * @param t
+	 *            teta (pseudorandom number)
+	 * @return OutputCommit that contains C, V, aux=(TETA, GAMMA)
+	 * 
+	 * @see it.unisa.dia.jzks.qTMC.LibertYung_qTMC#qSCom(java.util.ArrayList)
+	 */
+	public OutputCommit qSComPr(ArrayList<Element> Pk, BigInteger g,
+			BigInteger t) {
+		OutputCommit osc = new OutputCommit();
+
+		Element gamma = Zr.newElement();
+		gamma.set(g);
+		Element teta = Zr.newElement();
+		teta.set(t);
+
+		ElementPowPreProcessing g1p = getPreProcessing(Pk).get(1);
+
+		Element C = g1p.powZn(teta);
+		osc.setC(C);
+
+		Element V = g1p.powZn(gamma);
+		osc.setV(V);
+
+		ArrayList<Element> aux = new ArrayList<Element>();
+		aux.add(0, teta);
+		aux.add(1, gamma);
+		osc.setAux(aux);
+		return osc;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qFake(java.util.ArrayList,
+	 * it.unisa.dia.gas.jpbc.Element)
+	 */
+	public OutputCommit qFake(ArrayList<Element> Pk, Element tk) {
+		OutputCommit ofc = new OutputCommit();
+
+		Element gamma = Zr.newRandomElement();
+		Element teta = Zr.newRandomElement();
+		Element C = gp.powZn(teta);
+		ofc.setC(C);
+
+		Element V = gp.powZn(gamma);
+		ofc.setV(V);
+
+		ArrayList<Element> aux = new ArrayList<Element>();
+		aux.add(0, teta);
+		aux.add(1, gamma);
+		ofc.setAux(aux);
+		return ofc;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qHOpen(java.util.ArrayList,
+	 * it.unisa.dia.gas.jpbc.Element, int, java.util.ArrayList)
+	 */
+	public Element[] qHOpen(ArrayList<Element> PK, Element mi, int i,
+			ArrayList<Element> aux) throws MessageMismatchException {
+		Element[] piGreek = new Element[2];
+		Element gamma = aux.get(aux.size() - 2);
+		Element teta = aux.get(aux.size() - 1);
+
+		if (aux.contains(mi) && (!aux.get(i).equals(mi)))
+			throw new MessageMismatchException(
+					"The message in mi parameter is not the same of aux[i]");
+
+		Element Wi = openingPow(PK, gamma, i, aux);
+		Wi.powZn(teta.duplicate().invert());
+		piGreek[0] = teta;
+		piGreek[1] = Wi;
+		return piGreek;
+	}
+
+	/**
+	 * Open all the positions of a hard commitment at once. Wi is the product
+	 * of Pk[i]^(GAMMA/TETA) and the i-th row of the public key Toeplitz matrix
+	 * raised to (m1/TETA,...,mq/TETA): TETA is inverted once and the rows are
+	 * computed together (see ToeplitzPreProcessing), so the q openings cost
+	 * about q^1.585 exponentiations instead of q^2.
+	 * 
+	 * @param PK
+	 *            public key
+	 * @param aux
+	 *            auxiliary information aux=(m1,...,mq, GAMMA, TETA) of a hard
+	 *            commitment
+	 * @return W, where W[i-1] is the opening Wi of the message mi (hard
+	 *         opening PI-GREEK=(TETA, W[i-1]), soft opening TAU=W[i-1])
+	 */
+	public Element[] qHOpenAll(ArrayList<Element> PK, ArrayList<Element> aux) {
+		int q = aux.size() - 3;
+		Element gamma = aux.get(aux.size() - 2);
+		Element tetaInverse = aux.get(aux.size() - 1).duplicate().invert();
+
+		Element[] exponents = new Element[q];
+		for (int j = 1; j <= q; j++)
+			exponents[j - 1] = aux.get(j).duplicate().mul(tetaInverse);
+
+		PublicKeyPreProcessing pkp = getPreProcessing(PK);
+		Element[] W = pkp.getToeplitz().mul(exponents);
+		Element gammaTeta = gamma.duplicate().mul(tetaInverse);
+		for (int i = 1; i <= q; i++)
+			W[i - 1].mul(pkp.powZn(i, gammaTeta));
+		return W;
+	}
+
+	/**
+	 * Replace the message mi of a hard commitment without committing again:
+	 * since V=g^GAMMA * product of Pk[q+1-j]^mj, the new V is
+	 * V*Pk[q+1-i]^(mi'-mi). C, GAMMA and TETA do not change. The commitment is
+	 * updated in place, but V is replaced by a new element because the old
+	 * one can belong to openings already given out.
+	 * 
+	 * @param Pk
+	 *            public key
+	 * @param ohc
+	 *            hard commitment with aux=(m1,...,mq, GAMMA, TETA)
+	 * @param i
+	 *            index of the message to replace
+	 * @param newMessage
+	 *            the new message mi'
+	 * @return the updated commitment ohc
+	 */
+	public OutputCommit updateMessage(ArrayList<Element> Pk, OutputCommit ohc,
+			int i, Element newMessage) {
+		ArrayList<Element> aux = ohc.getAux();
+		int q = aux.size() - 3;
+		if (i < 1 || i > q)
+			throw new IllegalArgumentException("The index must be in [1, q]");
+
+		Element delta = newMessage.duplicate().sub(aux.get(i));
+		Element V = ohc.getV().duplicate();
+		V.mul(getPreProcessing(Pk).powZn(q + 1 - i, delta));
+		ohc.setV(V);
+		aux.set(i, newMessage.duplicate());
+
+		return ohc;
+	}
+
+	/**
+	 * Update an opening Wi of a hard commitment after the message mj has been
+	 * replaced (see updateMessage): Wi^TETA contains Pk[q+1-j+i]^mj, so the new
+	 * opening is Wi*Pk[q+1-j+i]^((mj'-mj)/TETA). Wj does not change.
+	 * 
+	 * @param PK
+	 *            public key
+	 * @param Wi
+	 *            the opening of the message mi (it is not modified)
+	 * @param i
+	 *            index of the opened message
+	 * @param j
+	 *            index of the replaced message
+	 * @param oldMessage
+	 *            the old message mj
+	 * @param newMessage
+	 *            the new message mj'
+	 * @param teta
+	 *            TETA of the hard commitment
+	 * @return the opening Wi of the updated commitment
+	 */
+	public Element updateOpening(ArrayList<Element> PK, Element Wi, int i,
+			int j, Element oldMessage, Element newMessage, Element teta) {
+		Element[] W = { Wi };
+		int[] indexes = { i };
+		updateOpenings(PK, W, indexes, j, oldMessage, newMessage, teta);
+		return W[0];
+	}
+
+	/**
+	 * Update many openings of the same hard commitment after the message mj
+	 * has been replaced, with one inversion of TETA and one exponentiation for
+	 * each opening (see updateOpening)
+	 * 
+	 * @param PK
+	 *            public key
+	 * @param W
+	 *            the openings, replaced by the updated ones (null entries are
+	 *            skipped)
+	 * @param indexes
+	 *            indexes of the opened messages
+	 * @param j
+	 *            index of the replaced message
+	 * @param oldMessage
+	 *            the old message mj
+	 * @param newMessage
+	 *            the new message mj'
+	 * @param teta
+	 *            TETA of the hard commitment
+	 */
+	public void updateOpenings(ArrayList<Element> PK, Element[] W,
+			int[] indexes, int j, Element oldMessage, Element newMessage,
+			Element teta) {
+		int q = (int) PK.size() / 2;
+		PublicKeyPreProcessing pkp = getPreProcessing(PK);
+		Element delta = newMessage.duplicate().sub(oldMessage).mul(
+				teta.duplicate().invert());
+
+		for (int k = 0; k < W.length; k++) {
+			int i = indexes[k];
+			if (W[k] == null || i == j)
+				continue;
+			W[k] = W[k].duplicate().mul(pkp.powZn(q + 1 - j + i, delta));
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qSOpen(java.util.ArrayList,
+	 * it.unisa.dia.gas.jpbc.Element, int, boolean, java.util.ArrayList)
+	 */
+	public Element qSOpen(ArrayList<Element> PK, Element message, int i,
+			int flag, ArrayList<Element> aux) {
+		Element tau = null;
+
+		Element gamma;
+		Element teta;
+
+		if (flag == LibertYung_qTMC.SOFT_COMMITMENT) {// soft commit
+			teta = aux.get(0);
+			gamma = aux.get(1);
+			int q = (int) PK.size() / 2;
+			PublicKeyPreProcessing pkp = getPreProcessing(PK);
+			Element WiA = pkp.powZn(i, gamma);
+			Element WiB = pkp.powZn(q, message.duplicate().negate());
+			WiA.mul(WiB);
+			WiA.powZn(teta.duplicate().invert());
+			tau = WiA;
+		} else if (flag == LibertYung_qTMC.HARD_COMMITMENT) {// hard commit
+			Element mi = aux.get(i);
+			if (!mi.isEqual(message))
+				return tau = PERPENDICULAR;
+			gamma = aux.get(aux.size() - 2);
+			teta = aux.get(aux.size() - 1);
+			Element Wi = openingPow(PK, gamma, i, aux);
+			Wi.powZn(teta.duplicate().invert());
+			tau = Wi;
+		}
+
+		return tau;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qHVer(java.util.ArrayList,
+	 * it.unisa.dia.gas.jpbc.Element, int, it.unisa.dia.gas.jpbc.Element,
+	 * it.unisa.dia.gas.jpbc.Element, it.unisa.dia.gas.jpbc.Element[])
+	 */
+	public boolean qHVer(ArrayList<Element> PK, Element mi, int i, Element C,
+			Element V, Element[] piGreek) {
+		Element teta = piGreek[0].duplicate();
+		Element Wi = piGreek[1].duplicate();
+		Element e1 = getPreProcessing(PK).pairing(i, V);
+		Element e2 = pairing.pairing(C, Wi);
+		Element e2b = getPreProcessing(PK).getPairingTable().powZn(mi);
+		e2.mul(e2b);
+
+		if (e1.isEqual(e2) && (C.isEqual(gp.powZn(teta))))
+			return true;
+
+		return false;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qSVer(java.util.ArrayList,
+	 * it.unisa.dia.gas.jpbc.Element, int, it.unisa.dia.gas.jpbc.Element,
+	 * it.unisa.dia.gas.jpbc.Element, it.unisa.dia.gas.jpbc.Element)
+	 */
+	public boolean qSVer(ArrayList<Element> PK, Element mi, int i, Element C,
+			Element V, Element tau) {
+		Element Wi = tau;
+		if (Wi == PERPENDICULAR)
+			return false;
+		Element e1 = getPreProcessing(PK).pairing(i, V);
+		Element e2a = pairing.pairing(C, Wi);
+		Element e2b = getPreProcessing(PK).getPairingTable().powZn(mi);
+		Element e2 = e2a.mul(e2b);
+
+		// verifica che C e V appartengono a G !!!!
+		if (!(G.equals(C.getField()) && G.equals(V.getField()))) {
+			return false;
+		}
+
+		if (e1.isEqual(e2)) {
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Batch version of qHVer: it checks many hard openings under the same
+	 * public key at once. Every check is raised to a small random exponent and
+	 * all the checks are multiplied together; since C = g^TETA, the e(C, Wi)
+	 * terms collapse into a single pairing, so the whole batch costs at most
+	 * q+1 pairings.
+	 * 
+	 * @param PK
+	 *            public key
+	 * @param tuples
+	 *            the openings to verify, with PI-GREEK=(TETA, Wi)
+	 * @return true if all the openings are valid, false otherwise (with
+	 *         probability 2^-BATCH_EXPONENT_BITS of a wrong answer)
+	 */
+	public boolean qHBatchVer(ArrayList<Element> PK,
+			ArrayList<VerificationTuple> tuples) {
+		int n = tuples.size();
+		if (n == 0)
+			return true;
+
+		BigInteger order = Zr.getOrder();
+		BigInteger[] r = batchExponents(n);
+
+		Element[] C = new Element[n];
+		Element[] W = new Element[n];
+		BigInteger[] wExponents = new BigInteger[n];
+		BigInteger tetaSum = BigInteger.ZERO;
+		BigInteger mSum = BigInteger.ZERO;
+		for (int k = 0; k < n; k++) {
+			VerificationTuple t = tuples.get(k);
+			BigInteger teta = t.getOpening()[0].toBigInteger();
+			C[k] = t.getC();
+			W[k] = t.getOpening()[1];
+			wExponents[k] = r[k].multiply(teta).mod(order);
+			tetaSum = tetaSum.add(r[k].multiply(teta));
+			mSum = mSum.add(r[k].multiply(t.getMessage().toBigInteger()));
+		}
+
+		// C = g^TETA
+		if (!MultiExponentiation.pow(C, r).isEqual(gp.pow(tetaSum.mod(order))))
+			return false;
+
+		// e(gi, V) = e(C, Wi) e(g1, gq)^m
+		Element left = batchPairings(PK, tuples, r);
+		Element right = pairing.pairing(PK.get(0), MultiExponentiation.pow(W,
+				wExponents));
+		right.mul(getPreProcessing(PK).getPairingTable().pow(mSum.mod(order)));
+
+		return left.isEqual(right);
+	}
+
+	/**
+	 * Batch version of qSVer: it checks many soft openings under the same
+	 * public key at once. The e(gi, V) pairings are grouped by index, so the
+	 * batch costs at most q pairings plus one for each opening.
+	 * 
+	 * @param PK
+	 *            public key
+	 * @param tuples
+	 *            the openings to verify, with TAU=Wi
+	 * @return true if all the openings are valid, false otherwise (with
+	 *         probability 2^-BATCH_EXPONENT_BITS of a wrong answer)
+	 */
+	public boolean qSBatchVer(ArrayList<Element> PK,
+			ArrayList<VerificationTuple> tuples) {
+		int n = tuples.size();
+		if (n == 0)
+			return true;
+
+		BigInteger order = Zr.getOrder();
+		BigInteger[] r = batchExponents(n);
+
+		Element right = null;
+		BigInteger mSum = BigInteger.ZERO;
+		for (int k = 0; k < n; k++) {
+			VerificationTuple t = tuples.get(k);
+			Element Wi = t.getOpening()[0];
+			if (Wi == PERPENDICULAR)
+				return false;
+
+			// verifica che C e V appartengono a G !!!!
+			if (!(G.equals(t.getC().getField()) && G.equals(t.getV()
+					.getField())))
+				return false;
+
+			Element e = pairing.pairing(t.getC().duplicate().pow(r[k]), Wi);
+			if (right == null)
+				right = e;
+			else
+				right.mul(e);
+			mSum = mSum.add(r[k].multiply(t.getMessage().toBigInteger()));
+		}
+
+		// e(gi, V) = e(C, Wi) e(g1, gq)^m
+		Element left = batchPairings(PK, tuples, r);
+		right.mul(getPreProcessing(PK).getPairingTable().pow(mSum.mod(order)));
+
+		return left.isEqual(right);
+	}
+
+	/**
+	 * Compute the product of e(gi, V)^r for all the tuples, with one pairing
+	 * for each distinct index i
+	 * 
+	 * @param PK
+	 *            public key
+	 * @param tuples
+	 *            the openings to verify
+	 * @param r
+	 *            random exponents
+	 * @return product of e(gi, V)^r
+	 */
+	private Element batchPairings(ArrayList<Element> PK,
+			ArrayList<VerificationTuple> tuples, BigInteger[] r) {
+		Map<Integer, ArrayList<Integer>> byIndex = new HashMap<Integer, ArrayList<Integer>>();
+		for (int k = 0; k < tuples.size(); k++) {
+			Integer i = tuples.get(k).getIndex();
+			ArrayList<Integer> group = byIndex.get(i);
+			if (group == null) {
+				group = new ArrayList<Integer>();
+				byIndex.put(i, group);
+			}
+			group.add(k);
+		}
+
+		int[] indices = new int[byIndex.size()];
+		Element[] products = new Element[byIndex.size()];
+		int g = 0;
+		Iterator<Map.Entry<Integer, ArrayList<Integer>>> it = byIndex
+				.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, ArrayList<Integer>> entry = it.next();
+			ArrayList<Integer> group = entry.getValue();
+			Element[] V = new Element[group.size()];
+			BigInteger[] exponents = new BigInteger[group.size()];
+			for (int j = 0; j < group.size(); j++) {
+				V[j] = tuples.get(group.get(j)).getV();
+				exponents[j] = r[group.get(j)];
+			}
+			indices[g] = entry.getKey();
+			products[g] = MultiExponentiation.pow(V, exponents);
+			g++;
+		}
+		return getPreProcessing(PK).pairingProduct(indices, products);
+	}
+
+	/**
+	 * Generate the random exponents for batch verification
+	 * 
+	 * @param n
+	 *            number of exponents
+	 * @return n random non zero exponents of BATCH_EXPONENT_BITS bits
+	 */
+	private BigInteger[] batchExponents(int n) {
+		BigInteger[] r = new BigInteger[n];
+		for (int k = 0; k < n; k++) {
+			do {
+				r[k] = new BigInteger(BATCH_EXPONENT_BITS, batchRandom);
+			} while (r[k].signum() == 0);
+		}
+		return r;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qHEquiv(java.util.ArrayList,
+	 * it.unisa.dia.gas.jpbc.Element, java.util.ArrayList, int,
+	 * java.util.ArrayList)
+	 */
+	public Element[] qHEquiv(ArrayList<Element> pk, Element tk,
+			ArrayList<Element> messages, int i, ArrayList<Element> aux) {
+		Element[] piGreek = new Element[2];
+
+		Element teta = aux.get(0);
+		Element gamma = aux.get(1);
+
+		Element WiA = getPreProcessing(pk).powZn(i, gamma);
+		Element WiB = tk.duplicate()
+				.powZn(messages.get(i).duplicate().negate());
+		WiA.mul(WiB);
+		WiA.powZn(teta.duplicate().invert());
+		piGreek[0] = teta;
+		piGreek[1] = WiA;
+		return piGreek;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see libert_yung.LibertYung_qTMC#qSEquiv(java.util.ArrayList,
+	 * it.unisa.dia.gas.jpbc.Element, it.unisa.dia.gas.jpbc.Element, int,
+	 * java.util.ArrayList)
+	 */
+	public Element qSEquiv(ArrayList<Element> pk, Element tk, Element message,
+			int i, ArrayList<Element> aux) {
+
+		Element teta = aux.get(0);
+		Element gamma = aux.get(1);
+		Element WiA = getPreProcessing(pk).powZn(i, gamma);
+
+		Element WiB = tk.duplicate().powZn(message.duplicate().negate());
+		WiA = WiA.mul(WiB);
+		WiA = WiA.powZn(teta.duplicate().invert());
+
+		return WiA;
+
+	}
+
+}
@@ -0,0 +1,269 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.qTMC;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+
+import java.math.BigInteger;
+
+/**
+ * Simultaneous multi-exponentiation: computes b1^e1 * b2^e2 * ... * bn^en
+ * sharing the squarings between all the terms. Few terms are interleaved with
+ * the Straus method, many terms are collected in buckets (Pippenger method).
+ * Fixed bases with a precomputation table are combined by table lookups.
+ */
+public class MultiExponentiation {
+
+	/**
+	 * Number of terms from which the bucket method is used
+	 */
+	public static final int PIPPENGER_THRESHOLD = 32;
+
+	/**
+	 * Compute the product of the bases raised to the exponents
+	 *
+	 * @param bases
+	 *            the bases (they are not modified)
+	 * @param exponents
+	 *            the exponents (Zr elements)
+	 * @return product of bases[j]^exponents[j]
+	 */
+	public static Element powZn(Element[] bases, Element[] exponents) {
+		BigInteger[] k = new BigInteger[exponents.length];
+		for (int j = 0; j < exponents.length; j++)
+			k[j] = exponents[j].toBigInteger();
+		return pow(bases, k);
+	}
+
+	/**
+	 * Compute the product of fixed bases raised to the exponents: every term
+	 * is read from the base precomputation table, so there are no squarings
+	 * to share
+	 *
+	 * @param tables
+	 *            precomputation tables of the bases
+	 * @param exponents
+	 *            the exponents (Zr elements)
+	 * @return product of bases[j]^exponents[j]
+	 */
+	public static Element powZn(ElementPowPreProcessing[] tables,
+			Element[] exponents) {
+		if (tables.length != exponents.length)
+			throw new IllegalArgumentException(
+					"The number of bases and exponents mismatch");
+
+		Element result = tables[0].powZn(exponents[0]);
+		for (int j = 1; j < tables.length; j++)
+			result.mul(tables[j].powZn(exponents[j]));
+		return result;
+	}
+
+	/**
+	 * Compute the product of the bases raised to the exponents
+	 *
+	 * @param bases
+	 *            the bases (they are not modified)
+	 * @param exponents
+	 *            the non negative exponents
+	 * @return product of bases[j]^exponents[j]
+	 */
+	public static Element pow(Element[] bases, BigInteger[] exponents) {
+		if (bases.length != exponents.length)
+			throw new IllegalArgumentException(
+					"The number of bases and exponents mismatch");
+
+		Element result = bases[0].getField().newOneElement();
+
+		int bits = 0;
+		for (int j = 0; j < exponents.length; j++)
+			bits = Math.max(bits, exponents[j].bitLength());
+		if (bits == 0)
+			return result;
+
+		int n = bases.length;
+		if (n < PIPPENGER_THRESHOLD) {
+			int w = strausWindow(bits);
+			return straus(result, bases, digits(exponents, bits, w), w);
+		}
+		int c = pippengerWindow(n, bits);
+		return pippenger(result, bases, digits(exponents, bits, c), c);
+	}
+
+	/**
+	 * Straus interleaved window method
+	 *
+	 * @param acc
+	 *            accumulator (set to one)
+	 * @param bases
+	 *            the bases
+	 * @param digits
+	 *            exponents digits, most significant first
+	 * @param w
+	 *            window size
+	 * @return the accumulator
+	 */
+	private static Element straus(Element acc, Element[] bases,
+			int[][] digits, int w) {
+		int size = 1 << w;
+		Element[][] table = new Element[bases.length][];
+		for (int j = 0; j < bases.length; j++) {
+			table[j] = new Element[size];
+			table[j][1] = bases[j].duplicate();
+			for (int d = 2; d < size; d++)
+				table[j][d] = table[j][d - 1].duplicate().mul(bases[j]);
+		}
+
+		boolean started = false;
+		for (int win = 0; win < digits[0].length; win++) {
+			if (started)
+				for (int s = 0; s < w; s++)
+					acc.square();
+			for (int j = 0; j < bases.length; j++) {
+				int d = digits[j][win];
+				if (d != 0) {
+					acc.mul(table[j][d]);
+					started = true;
+				}
+			}
+		}
+		return acc;
+	}
+
+	/**
+	 * Pippenger bucket method
+	 *
+	 * @param acc
+	 *            accumulator (set to one)
+	 * @param bases
+	 *            the bases
+	 * @param digits
+	 *            exponents digits, most significant first
+	 * @param c
+	 *            window size
+	 * @return the accumulator
+	 */
+	private static Element pippenger(Element acc, Element[] bases,
+			int[][] digits, int c) {
+		Element[] buckets = new Element[1 << c];
+
+		boolean started = false;
+		for (int win = 0; win < digits[0].length; win++) {
+			if (started)
+				for (int s = 0; s < c; s++)
+					acc.square();
+
+			for (int d = 1; d < buckets.length; d++)
+				buckets[d] = null;
+			for (int j = 0; j < bases.length; j++) {
+				int d = digits[j][win];
+				if (d == 0)
+					continue;
+				if (buckets[d] == null)
+					buckets[d] = bases[j].duplicate();
+				else
+					buckets[d].mul(bases[j]);
+			}
+
+			// sum_d bucket[d]^d as running products
+			Element running = null;
+			Element total = null;
+			for (int d = buckets.length - 1; d > 0; d--) {
+				if (buckets[d] != null) {
+					if (running == null)
+						running = buckets[d];
+					else
+						running.mul(buckets[d]);
+				}
+				if (running != null) {
+					if (total == null)
+						total = running.duplicate();
+					else
+						total.mul(running);
+				}
+			}
+			if (total != null) {
+				acc.mul(total);
+				started = true;
+			}
+		}
+		return acc;
+	}
+
+	/**
+	 * Split the exponents into digits of w bits
+	 *
+	 * @param exponents
+	 *            the exponents
+	 * @param bits
+	 *            maximum exponent bit length
+	 * @param w
+	 *            digit size
+	 * @return digits[j][win], most significant window first
+	 */
+	private static int[][] digits(BigInteger[] exponents, int bits, int w) {
+		int windows = (bits + w - 1) / w;
+		int[][] digits = new int[exponents.length][windows];
+		for (int j = 0; j < exponents.length; j++) {
+			BigInteger k = exponents[j];
+			for (int win = 0; win < windows; win++) {
+				int offset = (windows - 1 - win) * w;
+				int d = 0;
+				for (int b = w - 1; b >= 0; b--) {
+					d <<= 1;
+					if (k.testBit(offset + b))
+						d |= 1;
+				}
+				digits[j][win] = d;
+			}
+		}
+		return digits;
+	}
+
+	/**
+	 * Straus window size: it minimizes table size plus multiplications for
+	 * each base
+	 *
+	 * @param bits
+	 *            exponents bit length
+	 * @return window size
+	 */
+	private static int strausWindow(int bits) {
+		int best = 1;
+		int bestCost = Integer.MAX_VALUE;
+		for (int w = 1; w <= 6; w++) {
+			int cost = (1 << w) - 2 + (bits + w - 1) / w;
+			if (cost < bestCost) {
+				bestCost = cost;
+				best = w;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Pippenger window size: it minimizes bucket accumulations plus bucket
+	 * reductions
+	 *
+	 * @param n
+	 *            number of terms
+	 * @param bits
+	 *            exponents bit length
+	 * @return window size
+	 */
+	private static int pippengerWindow(int n, int bits) {
+		int best = 1;
+		int bestCost = Integer.MAX_VALUE;
+		for (int c = 1; c <= 16; c++) {
+			int cost = ((bits + c - 1) / c) * (n + (2 << c) + c);
+			if (cost < bestCost) {
+				bestCost = cost;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.qTMC;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.jpbc.PairingPreProcessing;
+
+import java.util.ArrayList;
+
+/**
+ * Fixed-base precomputation tables for the elements of a public key and for
+ * the constant pairing e(g1, gq), and Miller loop precomputations for the
+ * pairings having a public key element as first argument. The tables are built
+ * the first time they are used and then shared by all the commitment
+ * operations under the same key.
+ */
+public class PublicKeyPreProcessing {
+
+	/**
+	 * Public key
+	 */
+	private ArrayList<Element> pk;
+
+	/**
+	 * Precomputation tables, one for each public key element
+	 */
+	private ElementPowPreProcessing[] tables;
+
+	/**
+	 * Pairing object for Pairing-Based operations
+	 */
+	private Pairing pairing;
+
+	/**
+	 * Precomputation table of e(g1, gq) (it belongs to GT)
+	 */
+	private ElementPowPreProcessing pairingTable;
+
+	/**
+	 * Pairing precomputations, one for each public key element
+	 */
+	private PairingPreProcessing[] pairings;
+
+	/**
+	 * Precomputation of the Toeplitz matrix used to open all the positions
+	 */
+	private ToeplitzPreProcessing toeplitz;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pk
+	 *            public key
+	 * @param pairing
+	 *            Pairing object for Pairing-Based operations
+	 */
+	public PublicKeyPreProcessing(ArrayList<Element> pk, Pairing pairing) {
+		this.pk = pk;
+		this.pairing = pairing;
+		this.tables = new ElementPowPreProcessing[pk.size()];
+		this.pairings = new PairingPreProcessing[pk.size()];
+	}
+
+	/**
+	 * Get the public key
+	 */
+	public ArrayList<Element> getPk() {
+		return pk;
+	}
+
+	/**
+	 * Get the precomputation table of a public key element
+	 *
+	 * @param i
+	 *            index of the element into the public key
+	 * @return the precomputation table of Pk[i]
+	 */
+	public synchronized ElementPowPreProcessing get(int i) {
+		if (tables[i] == null)
+			tables[i] = pk.get(i).pow();
+		return tables[i];
+	}
+
+	/**
+	 * Raise a public key element to a Zr element
+	 *
+	 * @param i
+	 *            index of the element into the public key
+	 * @param exponent
+	 *            the exponent
+	 * @return Pk[i]^exponent
+	 */
+	public Element powZn(int i, Element exponent) {
+		return get(i).powZn(exponent);
+	}
+
+	/**
+	 * Get the precomputation table of the constant pairing e(g1, gq); the
+	 * pairing is computed only once for the public key
+	 *
+	 * @return the precomputation table of e(g1, gq)
+	 */
+	public synchronized ElementPowPreProcessing getPairingTable() {
+		if (pairingTable == null) {
+			int q = pk.size() / 2;
+			pairingTable = pairing.pairing(pk.get(1), pk.get(q)).pow();
+		}
+		return pairingTable;
+	}
+
+	/**
+	 * Get the precomputation of the public key Toeplitz matrix
+	 * T[i][j]=Pk[q+1-j+i], built the first time all the positions of a
+	 * commitment are opened
+	 *
+	 * @return the Toeplitz matrix precomputation
+	 */
+	public synchronized ToeplitzPreProcessing getToeplitz() {
+		if (toeplitz == null)
+			toeplitz = new ToeplitzPreProcessing(pk);
+		return toeplitz;
+	}
+
+	/**
+	 * Get the pairing precomputation of a public key element
+	 *
+	 * @param i
+	 *            index of the element into the public key
+	 * @return the precomputed Miller loop lines of Pk[i]
+	 */
+	public synchronized PairingPreProcessing getPairing(int i) {
+		if (pairings[i] == null)
+			pairings[i] = pairing.pairing(pk.get(i));
+		return pairings[i];
+	}
+
+	/**
+	 * Compute a pairing whose first argument is a public key element
+	 *
+	 * @param i
+	 *            index of the element into the public key
+	 * @param e
+	 *            second argument
+	 * @return e(Pk[i], e)
+	 */
+	public Element pairing(int i, Element e) {
+		return getPairing(i).pairing(e);
+	}
+
+	/**
+	 * Compute the product of pairings e(Pk[i1], e1) * ... * e(Pk[in], en).
+	 * Terms with the same index are merged by bilinearity into one pairing, the
+	 * others use the precomputed Miller loop of their public key element. jPBC
+	 * does not expose the Miller loop apart from the final exponentiation, so
+	 * each distinct index still costs one final exponentiation.
+	 *
+	 * @param indices
+	 *            indexes of the first arguments into the public key
+	 * @param e
+	 *            second arguments (they are not modified)
+	 * @return product of e(Pk[indices[k]], e[k])
+	 */
+	public Element pairingProduct(int[] indices, Element[] e) {
+		if (indices.length != e.length)
+			throw new IllegalArgumentException(
+					"The number of first and second arguments mismatch");
+
+		Element[] merged = new Element[pk.size()];
+		for (int k = 0; k < indices.length; k++) {
+			if (merged[indices[k]] == null)
+				merged[indices[k]] = e[k].duplicate();
+			else
+				merged[indices[k]].mul(e[k]);
+		}
+
+		Element result = null;
+		for (int i = 0; i < merged.length; i++) {
+			if (merged[i] == null)
+				continue;
+			Element p = pairing(i, merged[i]);
+			if (result == null)
+				result = p;
+			else
+				result.mul(p);
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,177 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.qTMC;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Field;
+
+import java.util.ArrayList;
+
+/**
+ * Precomputation for the product of the public key Toeplitz matrix
+ * T[i][j]=Pk[q+1-j+i] (i, j=1..q) by a vector of exponents, that gives all the
+ * openings Wi of a hard commitment at once.
+ *
+ * The product is split with the Karatsuba method (T=[[T1, T0], [T2, T1]], the
+ * three half products are T1(v0+v1), (T0-T1)v1 and (T2-T1)v0), so it costs
+ * q^1.585 exponentiations instead of q^2. The derived matrices only depend on
+ * the public key, so the 1x1 matrices at the bottom of the recursion get a
+ * fixed-base precomputation table once.
+ */
+public class ToeplitzPreProcessing {
+
+	/**
+	 * Number of messages
+	 */
+	private int q;
+
+	/**
+	 * Matrix size: q rounded up to a power of two
+	 */
+	private int n;
+
+	/**
+	 * Precomputation tables of the 1x1 matrices, in recursion order (null for
+	 * the identity)
+	 */
+	private ElementPowPreProcessing[] tables;
+
+	/**
+	 * Next table to build or use
+	 */
+	private int cursor;
+
+	/**
+	 * Field of the public key
+	 */
+	private Field<?> G;
+
+	/**
+	 * Constructor
+	 *
+	 * @param pk
+	 *            public key
+	 */
+	public ToeplitzPreProcessing(ArrayList<Element> pk) {
+		q = pk.size() / 2;
+		G = pk.get(0).getField();
+
+		n = 1;
+		int leaves = 1;
+		while (n < q) {
+			n *= 2;
+			leaves *= 3;
+		}
+		tables = new ElementPowPreProcessing[leaves];
+
+		// diagonal[k] is T[i][j] with k=i-j+n-1; Pk[q+1] is the identity
+		Element[] diagonal = new Element[2 * n - 1];
+		for (int k = 0; k < diagonal.length; k++) {
+			int d = k - n + 1;
+			if (d > -q && d < q && d != 0)
+				diagonal[k] = pk.get(q + 1 + d);
+			else
+				diagonal[k] = G.newOneElement();
+		}
+		cursor = 0;
+		build(diagonal);
+	}
+
+	/**
+	 * Build the tables of the 1x1 matrices of the recursion
+	 *
+	 * @param diagonal
+	 *            diagonals of the Toeplitz matrix
+	 */
+	private void build(Element[] diagonal) {
+		if (diagonal.length == 1) {
+			if (!diagonal[0].isOne())
+				tables[cursor] = diagonal[0].pow();
+			cursor++;
+			return;
+		}
+
+		int h = (diagonal.length + 1) / 4;
+		Element[] t1 = new Element[2 * h - 1];
+		Element[] t01 = new Element[2 * h - 1];
+		Element[] t21 = new Element[2 * h - 1];
+		for (int k = 0; k < t1.length; k++) {
+			t1[k] = diagonal[k + h];
+			Element inverse = t1[k].duplicate().invert();
+			t01[k] = diagonal[k].duplicate().mul(inverse);
+			t21[k] = diagonal[k + 2 * h].duplicate().mul(inverse);
+		}
+		build(t1);
+		build(t01);
+		build(t21);
+	}
+
+	/**
+	 * Compute the product of the Toeplitz matrix by a vector of exponents
+	 *
+	 * @param exponents
+	 *            the q exponents (v1,...,vq) from index 0
+	 * @return the q products, the i-th is the product of Pk[q+1-j+i]^vj for
+	 *         j=1..q (from index 0)
+	 */
+	public Element[] mul(Element[] exponents) {
+		if (exponents.length != q)
+			throw new IllegalArgumentException(
+					"The number of exponents must be q");
+
+		Element[] v = new Element[n];
+		for (int j = 0; j < n; j++)
+			v[j] = (j < q) ? exponents[j] : exponents[0].getField()
+					.newZeroElement();
+
+		int[] next = { 0 };
+		Element[] products = mul(v, next);
+
+		Element[] result = new Element[q];
+		System.arraycopy(products, 0, result, 0, q);
+		return result;
+	}
+
+	/**
+	 * Karatsuba recursion step
+	 *
+	 * @param v
+	 *            vector of exponents
+	 * @param next
+	 *            next table to use
+	 * @return the products
+	 */
+	private Element[] mul(Element[] v, int[] next) {
+		if (v.length == 1) {
+			ElementPowPreProcessing table = tables[next[0]++];
+			Element[] p = new Element[1];
+			p[0] = (table == null) ? G.newOneElement() : table.powZn(v[0]);
+			return p;
+		}
+
+		int h = v.length / 2;
+		Element[] v0 = new Element[h];
+		Element[] v1 = new Element[h];
+		Element[] sum = new Element[h];
+		for (int j = 0; j < h; j++) {
+			v0[j] = v[j];
+			v1[j] = v[j + h];
+			sum[j] = v0[j].duplicate().add(v1[j]);
+		}
+
+		Element[] p0 = mul(sum, next);
+		Element[] p1 = mul(v1, next);
+		Element[] p2 = mul(v0, next);
+
+		Element[] result = new Element[v.length];
+		for (int i = 0; i < h; i++) {
+			result[i] = p1[i].mul(p0[i]);
+			result[i + h] = p2[i].mul(p0[i]);
+		}
+		return result;
+	}
+
+}
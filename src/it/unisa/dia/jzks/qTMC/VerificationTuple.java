@@ -0,0 +1,99 @@
+/**
+ * @author Costante Luca (dott.costante@gmail.com)
+ * @author Giardino Daniele (dagix5@gmail.com)
+ */
+package it.unisa.dia.jzks.qTMC;
+
+import it.unisa.dia.gas.jpbc.Element;
+
+/**
+ * An opening to verify: the commitment (C, V), the message m, its index i and
+ * the opening (PI-GREEK=(TETA, Wi) for hard openings, TAU=Wi for soft
+ * openings)
+ */
+public class VerificationTuple {
+
+	/**
+	 * Commitment C value
+	 */
+	private Element C;
+
+	/**
+	 * Commitment V value
+	 */
+	private Element V;
+
+	/**
+	 * The message m
+	 */
+	private Element message;
+
+	/**
+	 * Index of the message
+	 */
+	private int index;
+
+	/**
+	 * The opening: (TETA, Wi) if hard, (TAU) if soft
+	 */
+	private Element[] opening;
+
+	/**
+	 * Constructor
+	 *
+	 * @param c
+	 *            Commitment C value
+	 * @param v
+	 *            Commitment V value
+	 * @param message
+	 *            the message m
+	 * @param index
+	 *            index of message m
+	 * @param opening
+	 *            (TETA, Wi) for hard openings, (TAU) for soft openings
+	 */
+	public VerificationTuple(Element c, Element v, Element message, int index,
+			Element[] opening) {
+		C = c;
+		V = v;
+		this.message = message;
+		this.index = index;
+		this.opening = opening;
+	}
+
+	/**
+	 * Get the Commitment C value
+	 */
+	public Element getC() {
+		return C;
+	}
+
+	/**
+	 * Get the Commitment V value
+	 */
+	public Element getV() {
+		return V;
+	}
+
+	/**
+	 * Get the message m
+	 */
+	public Element getMessage() {
+		return message;
+	}
+
+	/**
+	 * Get the index of message m
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Get the opening
+	 */
+	public Element[] getOpening() {
+		return opening;
+	}
+
+}
@@ -12,7 +12,9 @@ import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
 import it.unisa.dia.jzks.qTMC.Commitment;
 import it.unisa.dia.jzks.qTMC.CommitmentKeys;
 import it.unisa.dia.jzks.qTMC.MessageMismatchException;
+import it.unisa.dia.jzks.qTMC.MultiExponentiation;
 import it.unisa.dia.jzks.qTMC.OutputCommit;
+import it.unisa.dia.jzks.qTMC.VerificationTuple;
 
 import java.util.ArrayList;
 
@@ -130,4 +132,166 @@ public class CommmitmentTest extends TestCase {
 
 	}
 
+	/**
+	 * Test Method for Multi-exponentiation (Straus and Pippenger methods)
+	 */
+	public final void testMultiExponentiation() {
+		int[] sizes = { 1, 3, MultiExponentiation.PIPPENGER_THRESHOLD + 1 };
+		for (int n : sizes) {
+			Element[] bases = new Element[n];
+			Element[] exponents = new Element[n];
+			Element expected = commitment.getG().newOneElement();
+			for (int j = 0; j < n; j++) {
+				bases[j] = commitment.getG().newRandomElement();
+				exponents[j] = commitment.getZr().newRandomElement();
+				expected.mul(bases[j].duplicate().powZn(exponents[j]));
+			}
+			assertTrue(MultiExponentiation.powZn(bases, exponents).isEqual(
+					expected));
+		}
+	}
+
+	/**
+	 * Test Method for public key precomputation tables
+	 */
+	public final void testPreProcessing() {
+		assertSame(commitment.getPreProcessing(keys.getPk()), commitment
+				.getPreProcessing(keys.getPk()));
+		Element e = commitment.getZr().newRandomElement();
+		assertTrue(commitment.getPreProcessing(keys.getPk()).powZn(2, e)
+				.isEqual(keys.getPk().get(2).duplicate().powZn(e)));
+		Element egq = commitment.getPairing().pairing(keys.getPk().get(1),
+				keys.getPk().get(3));
+		assertTrue(commitment.getPreProcessing(keys.getPk()).getPairingTable()
+				.powZn(e).isEqual(egq.duplicate().powZn(e)));
+		assertTrue(commitment.getPreProcessing(keys.getPk()).pairing(1,
+				keys.getPk().get(3)).isEqual(egq));
+		Element[] args = { keys.getPk().get(3), keys.getPk().get(2),
+				keys.getPk().get(3) };
+		int[] indices = { 1, 2, 1 };
+		Element product = egq.duplicate().square().mul(
+				commitment.getPairing().pairing(keys.getPk().get(2),
+						keys.getPk().get(2)));
+		assertTrue(commitment.getPreProcessing(keys.getPk()).pairingProduct(
+				indices, args).isEqual(product));
+	}
+
+	/**
+	 * Test Method for opening all the positions of a hard commitment
+	 */
+	public final void testOpenAll() {
+		OutputCommit ohc = commitment.qHCom(keys.getPk(), messageArray);
+		Element[] W = commitment.qHOpenAll(keys.getPk(), ohc.getAux());
+		assertEquals(3, W.length);
+		try {
+			for (int i = 1; i <= 3; i++) {
+				Element mi = messageArray.get(i);
+				Element[] piGreek = commitment.qHOpen(keys.getPk(), mi, i, ohc
+						.getAux());
+				assertTrue(W[i - 1].isEqual(piGreek[1]));
+				Element[] opening = { piGreek[0], W[i - 1] };
+				assertTrue(commitment.qHVer(keys.getPk(), mi, i, ohc.getC(),
+						ohc.getV(), opening));
+			}
+		} catch (MessageMismatchException e) {
+			fail("Message mismatch");
+		}
+	}
+
+	/**
+	 * Test Method for the in-place update of a committed message
+	 */
+	public final void testUpdateMessage() {
+		OutputCommit ohc = commitment.qHCom(keys.getPk(), messageArray);
+		ArrayList<Element> aux = ohc.getAux();
+		Element gamma = aux.get(aux.size() - 2);
+		Element teta = aux.get(aux.size() - 1);
+		Element C = ohc.getC();
+
+		Element m = commitment.getZr().newRandomElement();
+		commitment.updateMessage(keys.getPk(), ohc, 2, m);
+
+		ArrayList<Element> messages = new ArrayList<Element>(messageArray);
+		messages.set(2, m);
+		OutputCommit fresh = commitment.qHComPr(keys.getPk(), messages, gamma
+				.toBigInteger(), teta.toBigInteger());
+		assertTrue(C.isEqual(ohc.getC()));
+		assertTrue(fresh.getV().isEqual(ohc.getV()));
+
+		try {
+			assertTrue(commitment.qHVer(keys.getPk(), m, 2, ohc.getC(), ohc
+					.getV(), commitment.qHOpen(keys.getPk(), m, 2, ohc
+					.getAux())));
+			assertTrue(commitment.qHVer(keys.getPk(), messageArray.get(3), 3,
+					ohc.getC(), ohc.getV(), commitment.qHOpen(keys.getPk(),
+							messageArray.get(3), 3, ohc.getAux())));
+		} catch (MessageMismatchException e) {
+			fail("Message mismatch");
+		}
+	}
+
+	/**
+	 * Test Method for the update of openings after a message update
+	 */
+	public final void testUpdateOpening() {
+		OutputCommit ohc = commitment.qHCom(keys.getPk(), messageArray);
+		ArrayList<Element> aux = ohc.getAux();
+		Element teta = aux.get(aux.size() - 1);
+		Element[] W = commitment.qHOpenAll(keys.getPk(), aux);
+
+		Element old = aux.get(1).duplicate();
+		Element m = commitment.getZr().newRandomElement();
+		commitment.updateMessage(keys.getPk(), ohc, 1, m);
+
+		Element W3 = commitment.updateOpening(keys.getPk(), W[2], 3, 1, old,
+				m, teta);
+		int[] indexes = { 1, 2, 3 };
+		commitment.updateOpenings(keys.getPk(), W, indexes, 1, old, m, teta);
+
+		Element[] fresh = commitment.qHOpenAll(keys.getPk(), ohc.getAux());
+		assertTrue(W3.isEqual(fresh[2]));
+		for (int i = 0; i < 3; i++)
+			assertTrue(W[i].isEqual(fresh[i]));
+	}
+
+	/**
+	 * Test Method for batch verification of hard and soft openings
+	 */
+	public final void testBatchVerify() {
+		OutputCommit ohc1 = commitment.qHCom(keys.getPk(), messageArray);
+		OutputCommit ohc2 = commitment.qHCom(keys.getPk(), messageArray);
+
+		ArrayList<VerificationTuple> hard = new ArrayList<VerificationTuple>();
+		ArrayList<VerificationTuple> soft = new ArrayList<VerificationTuple>();
+		try {
+			for (int i = 1; i <= 3; i++) {
+				Element mi = messageArray.get(i);
+				hard.add(new VerificationTuple(ohc1.getC(), ohc1.getV(), mi,
+						i, commitment.qHOpen(keys.getPk(), mi, i, ohc1
+								.getAux())));
+				hard.add(new VerificationTuple(ohc2.getC(), ohc2.getV(), mi,
+						i, commitment.qHOpen(keys.getPk(), mi, i, ohc2
+								.getAux())));
+				Element[] tau = { commitment.qSOpen(keys.getPk(), mi, i, 0,
+						ohc1.getAux()) };
+				soft.add(new VerificationTuple(ohc1.getC(), ohc1.getV(), mi,
+						i, tau));
+			}
+		} catch (MessageMismatchException e) {
+			fail("Message mismatch");
+		}
+		assertTrue(commitment.qHBatchVer(keys.getPk(), hard));
+		assertTrue(commitment.qSBatchVer(keys.getPk(), soft));
+
+		// a wrong message makes the whole batch fail
+		VerificationTuple t = hard.get(0);
+		hard.set(0, new VerificationTuple(t.getC(), t.getV(), commitment
+				.getZr().newRandomElement(), t.getIndex(), t.getOpening()));
+		assertFalse(commitment.qHBatchVer(keys.getPk(), hard));
+		t = soft.get(0);
+		soft.set(0, new VerificationTuple(t.getC(), t.getV(), commitment
+				.getZr().newRandomElement(), t.getIndex(), t.getOpening()));
+		assertFalse(commitment.qSBatchVer(keys.getPk(), soft));
+	}
+
 }
@@ -6,8 +6,8 @@ package it.unisa.dia.jzks.utils;
 
 import it.unisa.dia.jzks.merkleTree.ExternalMerkleNode;
 import it.unisa.dia.jzks.merkleTree.InternalMerkleNode;
-import it.unisa.dia.jzks.merkleTree.LinkedMerkleTree;
 import it.unisa.dia.jzks.merkleTree.MerkleNode;
+import it.unisa.dia.jzks.merkleTree.MerkleTree;
 import it.unisa.dia.jzks.qTMC.LibertYung_qTMC;
 
 import java.awt.BorderLayout;
@@ -97,7 +97,7 @@ public class MerkleTree2D extends JApplet {
 
 	RadialTreeLayout<MerkleNode, String> radialLayout;
 
-	public MerkleTree2D(final LinkedMerkleTree tr) {
+	public MerkleTree2D(final MerkleTree tr) {
 		// create a simple graph for the demo
 		graph = new DelegateForest<MerkleNode, String>();
 